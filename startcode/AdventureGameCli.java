@@ -0,0 +1,93 @@
+import AdventureModel.BatchResult;
+import AdventureModel.CommandResult;
+import AdventureModel.GameEngine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Class AdventureGameCli.
+ * Plays a game on the command line, without JavaFX: commands are read from
+ * standard input, one per line, and what the player is shown is written to
+ * standard output, e.g.
+ *
+ *   java AdventureGameCli TinyGame
+ *
+ * With --script, a file of commands separated by semicolons or line breaks
+ * is run in one batch instead, and the outcome of each command is listed:
+ *
+ *   java AdventureGameCli TinyGame --script walkthrough.txt
+ *
+ * With --journal, the commands of the game are recorded to a file that
+ * AdventureModel.JournalReplay can replay:
+ *
+ *   java AdventureGameCli TinyGame --journal session.advj
+ *
+ * Standard output only holds what the player is shown. To see how the game
+ * files loaded, on standard error, add -Dadventure.verbose=true.
+ */
+public class AdventureGameCli {
+
+    public static void main(String[] args) throws IOException {
+        String gameName = args.length > 0 ? args[0] : "TinyGame";
+        if (args.length > 2 && args[1].equals("--script")) {
+            runScript(gameName, Path.of(args[2]));
+            return;
+        }
+        boolean interactive = System.console() != null; //only prompt a person, not a pipe
+        PrintStream out = System.out;
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+
+        try (GameEngine engine = new GameEngine(gameName)) {
+            if (args.length > 2 && args[1].equals("--journal")) engine.getGame().startJournal(new File(args[2]));
+            show(out, engine.start());
+            while (!engine.isOver()) {
+                if (interactive) {
+                    out.print("> ");
+                    out.flush();
+                }
+                String line = in.readLine();
+                if (line == null) break; //end of input
+                if (line.isBlank()) continue;
+                show(out, engine.execute(line));
+            }
+        }
+    }
+
+    /*
+     * Run a script file in one batch, then list the outcome and room of each
+     * command, and how fast the script ran.
+     */
+    private static void runScript(String gameName, Path script) throws IOException {
+        String commands = Files.readString(script);
+        try (GameEngine engine = new GameEngine(gameName)) {
+            long start = System.nanoTime();
+            BatchResult result = engine.executeBatch(commands);
+            long nanos = System.nanoTime() - start;
+
+            StringBuilder out = new StringBuilder();
+            for (int i = 0; i < result.size(); i++) {
+                out.append(i + 1).append('\t').append(BatchResult.outcomeName(result.outcome(i)))
+                        .append('\t').append(result.roomNumber(i)).append('\n');
+            }
+            System.out.print(out);
+            System.err.printf("Ran %d commands in %.1f ms: %.0f commands/sec%n",
+                    result.size(), nanos / 1e6, result.size() / Math.max(nanos / 1e9, 1e-9));
+        }
+    }
+
+    /*
+     * Print what the player is shown after a command.
+     */
+    private static void show(PrintStream out, CommandResult result) {
+        if (result.hasMoved()) out.println("[" + result.getRoomName() + "]");
+        out.println(result.getText());
+        if (result.isGameOver() && !result.getText().equals("GAME OVER")) out.println("GAME OVER");
+        out.println();
+    }
+}
@@ -0,0 +1,428 @@
+import AdventureModel.CommandResult;
+import AdventureModel.GameEngine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class AdventureGameServer.
+ * Hosts many players at once over a line protocol on TCP, each in a game of
+ * their own, e.g.
+ *
+ *   java AdventureGameServer --port 4000 --max-sessions 20000
+ *
+ * Every connection is served by a virtual thread that plays its game with a
+ * GameEngine. Each response of the server is a header line, any number of
+ * lines of text, and a line holding only "." (text lines that start with "."
+ * get another "." in front). The headers are:
+ *
+ *   GAMES name...   greeting, with the games that can be played
+ *   OK room         after PLAY or a command; the text is what the player is shown
+ *   OVER room       the game has ended, or its time limit ran out; the server closes the connection
+ *   ERROR message   the line was not understood; the connection stays open
+ *   BYE reason      the server closes the connection
+ *
+ * A client sends "PLAY name" to start a game, then one command per line, and
+ * "BYE" to leave.
+ *
+ * A session has one command in flight: it reads the next line only once the
+ * response to the last is written. A client that sends without reading
+ * fills its own TCP window and stalls only its own session, which is closed
+ * if a write stays stuck for the idle timeout, as is a session that sends
+ * nothing for that long. Lines are capped at 1024 characters, and past
+ * --max-sessions new connections are told "BYE busy". On shutdown the
+ * server stops accepting, lets every session finish its command and says
+ * "BYE shutting down", and closes what is left after the drain timeout.
+ *
+ * Every --stats seconds the server prints the sessions started per second
+ * and the p50 and p99 latency of commands.
+ */
+public class AdventureGameServer {
+
+    private static final int MAX_LINE = 1024; //longest line a client may send
+
+    private final int port; //port to listen on; 0 for any free port
+    private final int maxSessions; //most sessions open at once
+    private final long idleMillis; //how long a session may wait on its client
+    private final long drainMillis; //how long sessions get to finish on shutdown
+    private final long statsMillis; //how often stats are printed; 0 for never
+    private final Set<String> games; //names of the games that can be played
+
+    private final ExecutorService sessionThreads = Executors.newVirtualThreadPerTaskExecutor(); //one virtual thread per session
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet(); //sessions open
+    private final Semaphore permits; //sessions that may still be opened
+    private final LatencyHistogram latencies = new LatencyHistogram(); //command latencies since the last stats
+    private final AtomicLong sessionsStarted = new AtomicLong(); //sessions opened since the last stats
+    private final AtomicLong totalSessions = new AtomicLong(); //sessions opened since the server started
+
+    private ServerSocket serverSocket; //where connections are accepted
+    private Thread acceptor; //accepts connections
+    private Thread monitor; //closes stalled sessions and prints stats
+    private volatile boolean draining; //true once the server is shutting down
+
+    /**
+     * AdventureGameServer Constructor
+     * __________________________
+     *
+     * @param port the port to listen on; 0 for any free port
+     * @param maxSessions the most sessions open at once
+     * @param idleSeconds how long a session may wait on its client before it is closed
+     * @param drainSeconds how long sessions get to finish on shutdown
+     * @param statsSeconds how often stats are printed; 0 for never
+     */
+    public AdventureGameServer(int port, int maxSessions, int idleSeconds, int drainSeconds, int statsSeconds) {
+        this.port = port;
+        this.maxSessions = maxSessions;
+        this.permits = new Semaphore(maxSessions);
+        this.idleMillis = TimeUnit.SECONDS.toMillis(idleSeconds);
+        this.drainMillis = TimeUnit.SECONDS.toMillis(drainSeconds);
+        this.statsMillis = TimeUnit.SECONDS.toMillis(statsSeconds);
+        this.games = findGames();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, Integer> options = options(args, Map.of("--port", 4000, "--max-sessions", 20000,
+                "--idle", 300, "--drain", 10, "--stats", 5));
+        AdventureGameServer server = new AdventureGameServer(options.get("--port"), options.get("--max-sessions"),
+                options.get("--idle"), options.get("--drain"), options.get("--stats"));
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "adventure-server-drain"));
+        System.out.println("Serving " + server.games + " on port " + server.getPort() + " to at most "
+                + server.maxSessions + " players");
+    }
+
+    /*
+     * Read "--name value" pairs over the given defaults.
+     */
+    static Map<String, Integer> options(String[] args, Map<String, Integer> defaults) {
+        Map<String, Integer> options = new HashMap<>(defaults);
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!defaults.containsKey(args[i])) throw new IllegalArgumentException("Unknown option " + args[i] + "; expected one of " + defaults.keySet());
+            options.put(args[i], Integer.parseInt(args[i + 1]));
+        }
+        return options;
+    }
+
+    /*
+     * The directories in Games that hold a game.
+     */
+    private static Set<String> findGames() {
+        Set<String> games = new TreeSet<>();
+        File[] directories = new File("Games").listFiles(File::isDirectory);
+        if (directories != null) {
+            for (File directory : directories) {
+                if (new File(directory, "rooms.txt").isFile()) games.add(directory.getName());
+            }
+        }
+        return games;
+    }
+
+    /**
+     * start
+     * __________________________
+     * Start listening, and accept connections until the server is stopped.
+     *
+     * @throws IOException if the port can not be listened on
+     */
+    public void start() throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port), 1024);
+        this.acceptor = Thread.ofPlatform().name("adventure-server-acceptor").start(this::accept);
+        this.monitor = Thread.ofPlatform().name("adventure-server-monitor").daemon().start(this::monitor);
+    }
+
+    /**
+     * getPort
+     * __________________________
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * getTotalSessions
+     * __________________________
+     * @return the number of sessions opened since the server started
+     */
+    public long getTotalSessions() {
+        return this.totalSessions.get();
+    }
+
+    /**
+     * stop
+     * __________________________
+     * Stop accepting connections and drain the open sessions: each finishes
+     * the command it is running and is told "BYE shutting down". Sessions
+     * still open after the drain timeout are closed.
+     */
+    public void stop() {
+        if (this.draining) return;
+        this.draining = true;
+        try {
+            this.serverSocket.close();
+            this.acceptor.join();
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Could not stop accepting: " + e.getMessage());
+        }
+        for (Session session : this.sessions) session.wake();
+        this.sessionThreads.shutdown();
+        try {
+            if (!this.sessionThreads.awaitTermination(this.drainMillis, TimeUnit.MILLISECONDS)) {
+                System.out.println("Closing " + this.sessions.size() + " sessions that did not drain");
+                for (Session session : this.sessions) session.close();
+                this.sessionThreads.awaitTermination(this.drainMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.monitor.interrupt();
+        System.out.println("Drained after serving " + this.totalSessions.get() + " sessions");
+    }
+
+    /*
+     * Accept connections until the server socket is closed.
+     */
+    private void accept() {
+        while (!this.draining) {
+            Socket socket;
+            try {
+                socket = this.serverSocket.accept();
+            } catch (IOException e) {
+                if (!this.draining) System.out.println("Could not accept a connection: " + e.getMessage());
+                continue;
+            }
+            if (!this.permits.tryAcquire()) {
+                refuse(socket);
+                continue;
+            }
+            Session session = new Session(socket);
+            this.sessions.add(session);
+            this.sessionsStarted.incrementAndGet();
+            this.totalSessions.incrementAndGet();
+            this.sessionThreads.execute(session);
+        }
+    }
+
+    /*
+     * Turn a connection away when the server is full.
+     */
+    private void refuse(Socket socket) {
+        this.sessionThreads.execute(() -> {
+            try (socket) {
+                socket.getOutputStream().write("BYE busy\n.\n".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                //the client is gone already
+            }
+        });
+    }
+
+    /*
+     * Once a second, close sessions whose writes have been stuck for the
+     * idle timeout, and print stats when they are due.
+     */
+    private void monitor() {
+        long lastStats = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            for (Session session : this.sessions) {
+                long since = session.writingSince;
+                if (since != 0 && now - since > TimeUnit.MILLISECONDS.toNanos(this.idleMillis)) session.close();
+            }
+            if (this.statsMillis > 0 && now - lastStats >= TimeUnit.MILLISECONDS.toNanos(this.statsMillis)) {
+                printStats(now - lastStats);
+                lastStats = now;
+            }
+        }
+    }
+
+    /*
+     * Print the sessions started and the command latencies since the last stats.
+     */
+    private void printStats(long intervalNanos) {
+        LatencyHistogram interval = this.latencies.drain();
+        long started = this.sessionsStarted.getAndSet(0);
+        if (started == 0 && interval.count() == 0 && this.sessions.isEmpty()) return; //nothing to tell
+        double seconds = Math.max(intervalNanos / 1e9, 1e-9);
+        System.out.printf("%s %d open, %.1f sessions/sec, %.0f commands/sec, latency p50 %s, p99 %s%n",
+                LocalTime.now().truncatedTo(ChronoUnit.SECONDS), this.sessions.size(), started / seconds,
+                interval.count() / seconds, LatencyHistogram.format(interval.percentile(50)),
+                LatencyHistogram.format(interval.percentile(99)));
+    }
+
+    /**
+     * Session
+     * __________________________
+     * One connection, and the game played over it.
+     */
+    private final class Session implements Runnable {
+
+        private final Socket socket; //the connection
+        private final StringBuilder line = new StringBuilder(); //the line being read, reused
+        private BufferedReader in; //lines from the client
+        private Writer out; //responses to the client
+        private GameEngine engine; //the game, once the client has picked one
+        private volatile long writingSince; //System.nanoTime() when the write under way started, or 0
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.socket.setSoTimeout((int) AdventureGameServer.this.idleMillis);
+                this.socket.setTcpNoDelay(true);
+                this.in = new BufferedReader(new InputStreamReader(this.socket.getInputStream(), StandardCharsets.UTF_8));
+                this.out = new BufferedWriter(new OutputStreamWriter(this.socket.getOutputStream(), StandardCharsets.UTF_8));
+                send("GAMES " + String.join(" ", AdventureGameServer.this.games), null);
+                serve();
+            } catch (SocketTimeoutException e) {
+                sendQuietly("BYE idle");
+            } catch (ProtocolException e) {
+                sendQuietly("BYE " + e.getMessage());
+            } catch (IOException e) {
+                //the client is gone, or the session was closed
+            } finally {
+                close();
+                if (this.engine != null) this.engine.close();
+                AdventureGameServer.this.sessions.remove(this);
+                AdventureGameServer.this.permits.release();
+            }
+        }
+
+        /*
+         * Answer lines until the client leaves, the game ends or the server drains.
+         */
+        private void serve() throws IOException {
+            String line;
+            while (!AdventureGameServer.this.draining && (line = readLine()) != null) {
+                String command = line.strip();
+                if (command.isEmpty()) continue;
+                if (command.equalsIgnoreCase("BYE")) {
+                    send("BYE", null);
+                    return;
+                }
+                if (this.engine == null) {
+                    play(command);
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                CommandResult result = this.engine.execute(command);
+                AdventureGameServer.this.latencies.record(System.nanoTime() - start);
+                send((result.isGameOver() ? "OVER " : "OK ") + result.getRoomNumber(), result.getText());
+                if (result.isGameOver()) return;
+            }
+            if (AdventureGameServer.this.draining) send("BYE shutting down", null);
+        }
+
+        /*
+         * Start the game named by a PLAY line.
+         */
+        private void play(String command) throws IOException {
+            String[] words = command.split("\\s+");
+            if (words.length != 2 || !words[0].equalsIgnoreCase("PLAY")) {
+                send("ERROR expected PLAY and the name of a game", null);
+            } else if (!AdventureGameServer.this.games.contains(words[1])) {
+                send("ERROR no game named " + words[1], null);
+            } else {
+                this.engine = new GameEngine(words[1]);
+                CommandResult start = this.engine.start();
+                send("OK " + start.getRoomNumber(), start.getText());
+            }
+        }
+
+        /*
+         * Read one line of at most MAX_LINE characters, without its line break.
+         */
+        private String readLine() throws IOException {
+            StringBuilder line = this.line;
+            line.setLength(0);
+            int c;
+            while ((c = this.in.read()) != -1) {
+                if (c == '\n') return line.toString();
+                if (c == '\r') continue;
+                if (line.length() == MAX_LINE) throw new ProtocolException("line too long");
+                line.append((char) c);
+            }
+            return line.length() > 0 ? line.toString() : null;
+        }
+
+        /*
+         * Write one response: the header, the text dot-stuffed, and ".".
+         */
+        private void send(String header, String text) throws IOException {
+            Writer out = this.out;
+            this.writingSince = System.nanoTime();
+            out.write(header);
+            out.write('\n');
+            if (text != null) {
+                for (String textLine : text.split("\n", -1)) {
+                    if (textLine.startsWith(".")) out.write('.');
+                    out.write(textLine);
+                    out.write('\n');
+                }
+            }
+            out.write(".\n");
+            out.flush();
+            this.writingSince = 0;
+        }
+
+        private void sendQuietly(String header) {
+            try {
+                send(header, null);
+            } catch (IOException e) {
+                //the client is gone
+            }
+        }
+
+        /*
+         * Wake the session if it is waiting for a line, so it sees the server draining.
+         */
+        void wake() {
+            try {
+                this.socket.shutdownInput();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                this.socket.close();
+            } catch (IOException e) {
+                //closed already
+            }
+        }
+    }
+}
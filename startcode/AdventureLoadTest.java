@@ -0,0 +1,154 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class AdventureLoadTest.
+ * Plays many sessions at once against an AdventureGameServer to size hosts,
+ * e.g. 2000 players, each playing 10 games of TinyGame in turn:
+ *
+ *   java AdventureLoadTest TinyGame --port 4000 --clients 2000 --sessions 10
+ *
+ * With --serve 1 a server is started in the same JVM on a free port, and
+ * drained once the test is done. Each player is a virtual thread that plays
+ * a short walk through the game in every session. At the end the test
+ * prints the sessions completed per second and the p50, p99 and highest
+ * round trip of commands, as the players saw them.
+ */
+public class AdventureLoadTest {
+
+    private static final String[] WALK = {"look", "take bird", "w", "e", "drop bird", "inventory", "n", "s"}; //commands of each session
+
+    private final String game; //the game to play
+    private final int port; //the port of the server
+    private final LatencyHistogram roundTrips = new LatencyHistogram(); //time from sending a command to reading its response
+    private final AtomicLong completed = new AtomicLong(); //sessions played to the end
+    private final AtomicLong refused = new AtomicLong(); //sessions the server was too busy for
+    private final AtomicLong failed = new AtomicLong(); //sessions that broke off
+
+    AdventureLoadTest(String game, int port) {
+        this.game = game;
+        this.port = port;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String game = "TinyGame";
+        if (args.length % 2 == 1) { //the game, then options
+            game = args[0];
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        Map<String, Integer> options = AdventureGameServer.options(args, Map.of("--port", 4000, "--clients", 1000,
+                "--sessions", 10, "--serve", 0));
+
+        AdventureGameServer server = null;
+        int port = options.get("--port");
+        if (options.get("--serve") != 0) {
+            server = new AdventureGameServer(0, Integer.MAX_VALUE, 60, 10, 0);
+            server.start();
+            port = server.getPort();
+        }
+
+        AdventureLoadTest test = new AdventureLoadTest(game, port);
+        long nanos = test.run(options.get("--clients"), options.get("--sessions"));
+        test.report(nanos);
+        if (server != null) server.stop();
+    }
+
+    /**
+     * Play the sessions, all players at once.
+     *
+     * @param clients the number of players
+     * @param sessions the number of sessions each player plays in turn
+     * @return how long the sessions took, in nanoseconds
+     */
+    long run(int clients, int sessions) throws Exception {
+        long start = System.nanoTime();
+        try (ExecutorService players = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> running = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                running.add(players.submit(() -> {
+                    for (int s = 0; s < sessions; s++) playSession();
+                }));
+            }
+            for (Future<?> player : running) player.get();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /*
+     * Connect, play the walk and leave.
+     */
+    private void playSession() {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), this.port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            if (readResponse(in).startsWith("BYE")) {
+                this.refused.incrementAndGet();
+                return;
+            }
+            send(out, "PLAY " + this.game);
+            if (!readResponse(in).startsWith("OK")) {
+                this.failed.incrementAndGet();
+                return;
+            }
+            for (String command : WALK) {
+                long sent = System.nanoTime();
+                send(out, command);
+                String header = readResponse(in);
+                this.roundTrips.record(System.nanoTime() - sent);
+                if (!header.startsWith("OK")) {
+                    this.failed.incrementAndGet();
+                    return;
+                }
+            }
+            send(out, "BYE");
+            readResponse(in);
+            this.completed.incrementAndGet();
+        } catch (IOException e) {
+            this.failed.incrementAndGet();
+        }
+    }
+
+    private static void send(Writer out, String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+    }
+
+    /*
+     * Read one response and give back its header.
+     */
+    private static String readResponse(BufferedReader in) throws IOException {
+        String header = in.readLine();
+        String line = header;
+        while (line != null && !line.equals(".")) line = in.readLine();
+        if (line == null) throw new IOException("The server closed the connection");
+        return header;
+    }
+
+    /*
+     * Print the throughput and round trips of the test.
+     */
+    private void report(long nanos) {
+        double seconds = Math.max(nanos / 1e9, 1e-9);
+        System.out.printf("%d sessions in %.1f s: %.1f sessions/sec; %d commands, round trip p50 %s, p99 %s, max %s; %d refused, %d failed%n",
+                this.completed.get(), seconds, this.completed.get() / seconds, this.roundTrips.count(),
+                LatencyHistogram.format(this.roundTrips.percentile(50)), LatencyHistogram.format(this.roundTrips.percentile(99)),
+                LatencyHistogram.format(this.roundTrips.percentile(100)), this.refused.get(), this.failed.get());
+    }
+}
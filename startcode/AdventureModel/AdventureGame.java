@@ -2,20 +2,26 @@ package AdventureModel;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Class AdventureGame.  Handles all the necessary tasks to run the Adventure game.
  */
 public class AdventureGame implements Serializable {
     private final String directoryName; //An attribute to store the Introductory text of the game.
-    private String helpText; //A variable to store the Help text of the game. This text is displayed when the user types "HELP" command.
-    private final HashMap<Integer, Room> rooms; //A list of all the rooms in the game.
-    private HashMap<String,String> synonyms = new HashMap<>(); //A HashMap to store synonyms of commands.
-    private final String[] actionVerbs = {"QUIT","INVENTORY","TAKE","DROP"}; //List of action verbs (other than motions) that exist in all games. Motion vary depending on the room and game.
+    private WorldTemplate template; //The rooms, synonyms and help text of the game, shared with every game played from the same directory.
+    private SessionRooms rooms; //This game's own copies of the rooms it used.
     public Player player; //The Player of the game.
     public GameTimer gameTimer; // The timer of the game.
     public Leaderboard leaderboard;
     public TimerState timerState; // The state of the timer.
+    private transient Queue<WorldUpdate> pendingUpdates = new ConcurrentLinkedQueue<>(); // Edits to the game files waiting to be applied.
+    private transient TokenBuffer tokens = new TokenBuffer(); // The words of the command being interpreted, reused for every command.
+    private transient String lastVerb; // The verb of the last command, or null if it was a move or invalid.
+    private transient List<Room> lastPath = new ArrayList<>(); // The rooms the last move passed through, ending where the player is.
+    private transient CommandJournal journal; // Where the commands of the game are recorded, or null.
+    private transient GameClock clock; // The clock the timer of the game runs on.
 
     /**
      * Adventure Game Constructor
@@ -25,12 +31,41 @@ public class AdventureGame implements Serializable {
      * @param name the name of the adventure
      */
     public AdventureGame(String name){
-        this.synonyms = new HashMap<>();
-        this.rooms = new HashMap<>();
-        this.leaderboard = new Leaderboard();
+        this(name, true, GameClock.system());
+    }
+
+    /**
+     * Adventure Game Constructor
+     * __________________________
+     * Initializes attributes, with the timer of the game on the given clock,
+     * e.g. a VirtualClock to play out timed games instantly.
+     *
+     * @param name the name of the adventure
+     * @param clock the clock the timer of the game runs on
+     */
+    public AdventureGame(String name, GameClock clock){
+        this(name, true, clock);
+    }
+
+    /**
+     * Adventure Game Constructor
+     * __________________________
+     * Initializes attributes. A game that is not live, such as one that
+     * replays a journal, neither starts its timer nor follows edits to its
+     * game files.
+     *
+     * @param name the name of the adventure
+     * @param live false to leave the timer stopped and the game files unwatched
+     */
+    AdventureGame(String name, boolean live){
+        this(name, live, GameClock.system());
+    }
+
+    private AdventureGame(String name, boolean live, GameClock clock){
+        this.clock = clock;
         this.directoryName = "Games/" + name; //all games files are in the Games directory!
         try {
-            setUpGame();
+            setUpGame(live);
         } catch (IOException e) {
             throw new RuntimeException("An Error Occurred: " + e.getMessage());
         }
@@ -78,6 +113,10 @@ public class AdventureGame implements Serializable {
      * @throws IOException in the case of a file I/O error
      */
     public void setUpGame() throws IOException {
+        setUpGame(true);
+    }
+
+    private void setUpGame(boolean live) throws IOException {
 
         String directoryName = this.directoryName;
         AdventureLoader loader = new AdventureLoader(this, directoryName);
@@ -87,79 +126,187 @@ public class AdventureGame implements Serializable {
         this.player = new Player(this.rooms.get(1));
 
         // set up the timer
-        this.gameTimer = new GameTimer();
-        this.gameTimer.startTimer();
+        this.gameTimer = new GameTimer(this.clock != null ? this.clock : GameClock.system()); //a loaded game has lost its clock
+        if (live) this.gameTimer.startTimer();
 
         // set up the timer state
         this.timerState = new ResumeTimerState();
+
+        // pick up edits to the game files while the game runs
+        if (live) GameDirectoryWatcher.register(this);
     }
 
     /**
-     * tokenize
+     * startJournal
      * __________________________
+     * Record every command of the game from now on, with the time on its
+     * timer and its outcome, so the game can be replayed (see JournalReplay).
+     * Start the journal before the first command; a replay starts from a new game.
      *
-     * @param input string from the command line
-     * @return a string array of tokens that represents the command.
+     * @param file the journal; commands are appended to it
+     * @throws IOException if the journal can not be opened
      */
-    public String[] tokenize(String input){
+    public void startJournal(File file) throws IOException {
+        stopJournal();
+        this.journal = new CommandJournal(file, this.directoryName.substring("Games/".length()));
+    }
 
-        input = input.toUpperCase();
-        String[] commandArray = input.split(" ");
+    /**
+     * stopJournal
+     * __________________________
+     * Stop recording commands, and close the journal.
+     */
+    public void stopJournal() {
+        if (this.journal == null) return;
+        try {
+            this.journal.close();
+        } catch (IOException e) {
+            System.err.println("Could not close the journal: " + e.getMessage());
+        }
+        this.journal = null;
+    }
 
-        int i = 0;
-        while (i < commandArray.length) {
-            if(this.synonyms.containsKey(commandArray[i])){
-                commandArray[i] = this.synonyms.get(commandArray[i]);
-            }
-            i++;
+    /**
+     * queueWorldUpdate
+     * __________________________
+     * Hand the game a set of edits to its game files. The edits are applied
+     * before the next command is interpreted, on the thread that plays the game.
+     *
+     * @param update the edits
+     */
+    void queueWorldUpdate(WorldUpdate update) {
+        this.pendingUpdates.add(update);
+    }
+
+    /**
+     * applyWorldUpdates
+     * __________________________
+     * Apply the edits to the game files that arrived since the last command.
+     */
+    public void applyWorldUpdates() {
+        WorldUpdate update;
+        while ((update = this.pendingUpdates.poll()) != null) {
+            update.applyTo(this);
         }
-        return commandArray;
+    }
 
+    /**
+     * readObject
+     * Deserializing the AdventureGame object; a loaded game is kept up to date
+     * with its game files like a new one.
+     *
+     * @param ois The ObjectInputStream used for deserialization.
+     * @throws ClassNotFoundException If the class of a serialized object cannot be found.
+     * @throws IOException            If an I/O error occurs during deserialization.
+     */
+    private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
+        ois.defaultReadObject();
+        this.pendingUpdates = new ConcurrentLinkedQueue<>();
+        this.tokens = new TokenBuffer();
+        this.lastPath = new ArrayList<>();
+        GameDirectoryWatcher.register(this);
+    }
+
+    /**
+     * tokenize
+     * __________________________
+     * Words are matched against the vocabulary of the world, ignoring case,
+     * and synonyms are replaced by the words they stand for.
+     *
+     * @param input string from the command line
+     * @return a string array of tokens that represents the command.
+     */
+    public String[] tokenize(String input){
+        TokenBuffer tokens = new TokenBuffer();
+        this.template.getVocabulary().tokenize(input, tokens);
+        return tokens.words();
     }
 
     /**
      * movePlayer
      * __________________________
-     * Moves the player in the given direction, if possible.
-     * Return false if the player wins or dies as a result of the move.
+     * Moves the player in the given direction, if possible, and on through
+     * any forced rooms after it. Return false if the player wins or dies as
+     * a result of the move.
      *
      * @param direction the move command
      * @return false, if move results in death or a win (and game is over).  Else, true.
      */
     public boolean movePlayer(String direction) {
+        this.lastPath.clear();
+        WorldGraph graph = this.template.getGraph(); //where can we move?
+        int from = graph.roomId(this.player.getCurrentRoom().getRoomNumber());
+        if (from < 0) return true; //no move
+        int candidate = graph.firstCandidate(from, graph.getSymbols().idOf(direction.toUpperCase()));
+        if (candidate < 0) return true; //no move
+        return movePlayer(graph, from, candidate);
+    }
 
-        direction = direction.toUpperCase();
-        PassageTable motionTable = this.player.getCurrentRoom().getMotionTable(); //where can we move?
-        if (!motionTable.optionExists(direction)) return true; //no move
-
-        ArrayList<Passage> possibilities = new ArrayList<>();
-        for (Passage entry : motionTable.getDirection()) {
-            if (entry.getDirection().equals(direction)) { //this is the right direction
-                possibilities.add(entry); // are there possibilities?
-            }
+    /**
+     * Moves the player along the first passage of a direction that they can
+     * take, then along the FORCED passages of each forced room they reach,
+     * until they reach a room that is not forced or one that ends the game.
+     * Every room entered is added to the last path.
+     *
+     * A chain of fixed forced successors can not loop (the graph rejects such
+     * worlds), but one that depends on the player could; it is cut off after
+     * passing through every forced room once, leaving the player where it got to.
+     *
+     * @param graph the passages of the world
+     * @param from the room id of the current room
+     * @param candidate the first candidate passage of the direction
+     * @return false, if move results in death or a win (and game is over).  Else, true.
+     */
+    private boolean movePlayer(WorldGraph graph, int from, int candidate) {
+        int to = follow(graph, from, candidate);
+        for (int hops = 0; to >= 0; hops++) {
+            int successor = graph.forcedSuccessor(to);
+            if (successor == WorldGraph.NOT_FORCED) return true;
+            if (graph.endsGame(to)) return false;
+            if (hops == graph.forcedRoomCount()) return true; //going round in circles
+            to = successor == WorldGraph.DEPENDS ? follow(graph, to, graph.forcedCandidate(to)) : enter(graph, successor);
         }
+        return true;
+    }
 
-        //try the blocked passages first
-        Passage chosen = null;
-        for (Passage entry : possibilities) {
-            System.out.println(entry.getIsBlocked());
-            System.out.println(entry.getKeyName());
-
-            if (chosen == null && entry.getIsBlocked()) {
-                if (this.player.getInventory().contains(entry.getKeyName())) {
-                    chosen = entry; //we can make it through, given our stuff
-                    break;
-                }
-            } else { chosen = entry; } //the passage is unlocked
+    /**
+     * Moves the player along the first passage of a direction that they can
+     * take: a blocked one whose key they carry or whose condition holds, or
+     * else an open one.
+     *
+     * @param graph the passages of the world
+     * @param from the room id of the current room
+     * @param candidate the first candidate passage of the direction
+     * @return the room id the player moved to, or -1 if they could not move
+     */
+    private int follow(WorldGraph graph, int from, int candidate) {
+        int direction = graph.candidateDirection(candidate);
+        int end = graph.passageEnd(from);
+        int chosen = -1;
+        for (int c = candidate; c < end && chosen < 0 && graph.candidateDirection(c) == direction; c++) {
+            int passage = graph.candidate(c);
+            int key = graph.key(passage);
+            if (key == WorldGraph.NO_KEY
+                    || (key > WorldGraph.NO_KEY ? this.player.carries(graph.getSymbols(), key) : graph.condition(passage).test(this))) {
+                chosen = passage;
+            }
         }
+        if (chosen < 0) return -1; //doh, we just can't move.
+        return enter(graph, graph.destination(chosen));
+    }
 
-        if (chosen == null) return true; //doh, we just can't move.
-
-        int roomNumber = chosen.getDestinationRoom();
-        Room room = this.rooms.get(roomNumber);
-        this.player.setCurrentRoom(room);
-
-        return !this.player.getCurrentRoom().getMotionTable().getDirection().get(0).getDirection().equals("FORCED");
+    /**
+     * Moves the player into a room. The room they leave counts as visited.
+     *
+     * @param graph the passages of the world
+     * @param to the room id to move to
+     * @return the room id
+     */
+    private int enter(WorldGraph graph, int to) {
+        this.player.getCurrentRoom().visit();
+        this.player.setCurrentRoom(this.rooms.room(graph.roomNumber(to)));
+        this.lastPath.add(this.player.getCurrentRoom());
+        return to;
     }
 
     /**
@@ -169,47 +316,88 @@ public class AdventureGame implements Serializable {
      * @param command String representation of the command.
      */
     public String interpretAction(String command){
+        return interpretAction(command, 0, command.length());
+    }
 
-        String[] inputArray = tokenize(command); //look up synonyms
-
-        PassageTable motionTable = this.player.getCurrentRoom().getMotionTable(); //where can we move?
-
-        if (motionTable.optionExists(inputArray[0])) {
-            if (!movePlayer(inputArray[0])) {
-                if (this.player.getCurrentRoom().getMotionTable().getDirection().get(0).getDestinationRoom() == 0) {
-                    gameTimer.stopTimer();
-                    return "GAME OVER";
-
-                }
-                else return "FORCED";
-            } //something is up here! We are dead or we won.
-            return null;
-        } else if(Arrays.asList(this.actionVerbs).contains(inputArray[0])) {
-            if(inputArray[0].equals("QUIT")) { return "GAME OVER"; } //time to stop!
-            else if(inputArray[0].equals("INVENTORY") && this.player.getInventory().size() == 0) return "INVENTORY IS EMPTY";
-            else if(inputArray[0].equals("INVENTORY") && this.player.getInventory().size() > 0) return "THESE OBJECTS ARE IN YOUR INVENTORY:\n" + this.player.getInventory().toString();
-            else if(inputArray[0].equals("TAKE") && inputArray.length < 2) return "THE TAKE COMMAND REQUIRES AN OBJECT";
-            else if(inputArray[0].equals("DROP") && inputArray.length < 2) return "THE DROP COMMAND REQUIRES AN OBJECT";
-            else if(inputArray[0].equals("TAKE") && inputArray.length == 2) {
-                if(this.player.getCurrentRoom().checkIfObjectInRoom(inputArray[1])) {
-                    this.player.takeObject(inputArray[1]);
-                    return "YOU HAVE TAKEN:\n " + inputArray[1];
-                } else {
-                    return "THIS OBJECT IS NOT HERE:\n " + inputArray[1];
-                }
+    /**
+     * interpretAction
+     * interpret one command of a longer text, e.g. a script, without copying it out.
+     *
+     * @param text the text holding the command
+     * @param start the offset of the command in the text
+     * @param end the offset just past the command
+     * @return the output of the command, as interpretAction(String) gives it
+     */
+    String interpretAction(CharSequence text, int start, int end){
+        int tick = this.gameTimer.getCurrentTime(); //the time the command ran at, which replay sets before running it
+        String output = interpret(text, start, end);
+        if (this.journal != null) {
+            try {
+                this.journal.record(tick, text, start, end,
+                        BatchResult.outcomeOf(this, output), this.player.getCurrentRoom().getRoomNumber());
+            } catch (IOException e) {
+                System.err.println("Stopped the journal: " + e.getMessage()); //the game goes on without it
+                stopJournal();
             }
-            else if(inputArray[0].equals("DROP") && inputArray.length == 2) {
-                if(this.player.checkIfObjectInInventory(inputArray[1])) {
-                    this.player.dropObject(inputArray[1]);
-                    return "YOU HAVE DROPPED:\n " + inputArray[1];
-                } else {
-                    return "THIS OBJECT IS NOT IN YOUR INVENTORY:\n " + inputArray[1];
-                }
+        }
+        return output;
+    }
+
+    private String interpret(CharSequence text, int start, int end){
+
+        applyWorldUpdates(); //swap in any edits to the game files
+
+        TokenBuffer tokens = this.tokens;
+        this.lastVerb = null;
+        this.lastPath.clear();
+        this.template.getVocabulary().tokenize(text, start, end, tokens); //look up synonyms
+        if (tokens.size() == 0) return "INVALID COMMAND.";
+
+        WorldGraph graph = this.template.getGraph(); //where can we move?
+        int from = graph.roomId(this.player.getCurrentRoom().getRoomNumber());
+        int candidate = from < 0 || tokens.id(0) == Vocabulary.UNKNOWN ? -1 : graph.firstCandidate(from, tokens.id(0));
+
+        if (candidate >= 0) {
+            if (!movePlayer(graph, from, candidate)) { //something is up here! We are dead or we won.
+                gameTimer.stopTimer();
+                return "GAME OVER";
             }
+            return this.lastPath.size() > 1 ? "FORCED" : null; //FORCED: the player was moved on through forced rooms
+        }
+
+        CommandHandler handler = this.template.getCommand(tokens.id(0)); //QUIT, TAKE, LOOK, or a verb of the game
+        if (handler != null) {
+            this.lastVerb = tokens.word(0);
+            return handler.handle(this, tokens);
         }
         return "INVALID COMMAND.";
     }
 
+    /**
+     * getLastVerb
+     * __________________________
+     * The verb of the last command interpreted, so a view can present its
+     * outcome, e.g. show the help text differently from other output.
+     *
+     * @return the verb, with synonyms resolved, or null if the last command was a move or invalid
+     */
+    public String getLastVerb() {
+        return this.lastVerb;
+    }
+
+    /**
+     * getLastPath
+     * __________________________
+     * The rooms the last command moved the player through, in order: the room
+     * the move led to, any forced rooms it passed through, and the room the
+     * player ended up in, so a view can show each step of a forced chain.
+     *
+     * @return read-only list of rooms, empty if the last command did not move the player
+     */
+    public List<Room> getLastPath() {
+        return Collections.unmodifiableList(this.lastPath);
+    }
+
     /**
      * getDirectoryName
      * __________________________
@@ -227,7 +415,7 @@ public class AdventureGame implements Serializable {
      * @return helpText
      */
     public String getInstructions() {
-        return helpText;
+        return this.template.getHelpText();
     }
 
     /**
@@ -242,10 +430,11 @@ public class AdventureGame implements Serializable {
     /**
      * getRooms
      * __________________________
-     * Getter method for rooms
+     * Getter method for rooms. A room is copied from the
+     * world template the first time the game uses it.
      * @return map of key value pairs (integer to room)
      */
-    public HashMap<Integer, Room> getRooms() {
+    public Map<Integer, Room> getRooms() {
         return this.rooms;
     }
 
@@ -253,20 +442,63 @@ public class AdventureGame implements Serializable {
      * getSynonyms
      * __________________________
      * Getter method for synonyms
-     * @return map of key value pairs (synonym to command)
+     * @return read-only map of key value pairs (synonym to command)
      */
-    public HashMap<String, String> getSynonyms() {
-        return this.synonyms;
+    public Map<String, String> getSynonyms() {
+        return this.template.getSynonyms();
     }
 
     /**
-     * setHelpText
+     * getTemplate
      * __________________________
-     * Setter method for helpText
-     * @param help which is text to set
+     * Getter method for the world template
+     * @return the static part of the game, shared with other games
      */
-    public void setHelpText(String help) {
-        this.helpText = help;
+    public WorldTemplate getTemplate() {
+        return this.template;
+    }
+
+    /**
+     * setTemplate
+     * __________________________
+     * Setter method for the world template, used by the loader.
+     * The game starts with none of its own rooms.
+     * @param template the static part of the game
+     */
+    void setTemplate(WorldTemplate template) {
+        this.template = template;
+        this.rooms = new SessionRooms(template);
+    }
+
+    /**
+     * rebase
+     * __________________________
+     * Move the game onto a new version of its world template, keeping
+     * the objects the player moved and the rooms they visited.
+     * @param newer the new version of the template
+     */
+    void rebase(WorldTemplate newer) {
+        this.template = newer;
+        this.rooms.rebase(newer, this.player.getCurrentRoom());
+    }
+
+    /**
+     * hasVisited
+     * __________________________
+     * @param roomNumber the number of a room
+     * @return true if the player has been in the room and left it
+     */
+    boolean hasVisited(int roomNumber) {
+        return this.rooms.isVisited(roomNumber);
+    }
+
+    /**
+     * getUsedRooms
+     * __________________________
+     * @return the game's own copies of the rooms it used so far
+     */
+    Collection<Room> getUsedRooms() {
+        return this.rooms.usedRooms();
     }
 
     /**
@@ -288,31 +520,24 @@ public class AdventureGame implements Serializable {
     }
 
     /**
-     * saveLeaderboard
+     * setLeaderboard
      * __________________________
-     * Save the Leaderboard into the leaderboard.txt file.
+     * Setter method for the Leaderboard, used by the loader.
+     * @param leaderboard the leaderboard shared by the games of the directory
      */
-    public void saveLeaderboard() {
-        String leaderboardFileName = this.directoryName + "/leaderboard.txt";
-
-        File oldLeader = new File(leaderboardFileName);
-        oldLeader.delete();
-
-        File newLeader = new File(leaderboardFileName);
-        StringBuilder source = new StringBuilder();
-
-        for (String key : Leaderboard.bestTimes.keySet()) {
-            source.append(key).append(",").append(Leaderboard.bestTimes.get(key)).append("\n");
-        }
-
-        System.out.println(source);
+    void setLeaderboard(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
 
-        try {
-            FileWriter writer = new FileWriter(newLeader, false);
-            writer.write(source.toString());
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    /**
+     * saveLeaderboard
+     * __________________________
+     * Save the Leaderboard to the game directory, appending the new times to
+     * leaderboard.log in the background (see LeaderboardLog).
+     *
+     * @return completes once the times are on disk
+     */
+    public CompletableFuture<Void> saveLeaderboard() {
+        return this.leaderboard.save();
     }
 }
@@ -1,16 +1,64 @@
 package AdventureModel;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class AdventureLoader. Loads an adventure from files.
  */
 public class AdventureLoader {
 
+    private static final int BUFFER_SIZE = 1 << 16; //size of the read buffer for each game file
+    private static final String ROOM_SEPARATOR = "-----"; //line that ends a room description
+    private static final String[] GAME_FILES = {WorldImage.IMAGE_FILE_NAME, "rooms.txt", "objects.txt", "synonyms.txt", "leaderboard.txt", "help.txt"}; //in report order
+
+    /**
+     * Whether to report each load of a world, and each reload of edited game
+     * files (see GameDirectoryWatcher), on standard error. Off unless the
+     * adventure.verbose system property is "true", so standard output only
+     * ever holds what the player is shown.
+     */
+    static final boolean VERBOSE = Boolean.getBoolean("adventure.verbose");
+
+    /**
+     * Daemon threads that read the game files in parallel, shared by every loader.
+     */
+    private static final ExecutorService LOADER_POOL = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "adventure-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A parsing step that may fail with an I/O error.
+     */
+    interface GameFileTask<T> {
+        T parse() throws IOException;
+    }
+
     private AdventureGame game; //the game to return
     private String adventureName; //the name of the adventure
+    private Map<Integer, Room> rooms = new HashMap<>(); //the rooms of the world being loaded
+    private final Map<String, String> synonyms = new HashMap<>(); //the synonyms of the world being loaded
+
+    private int roomCount; //number of rooms parsed by the last load
+    private final AtomicLong bytesRead = new AtomicLong(); //number of bytes in the files parsed by the last load
+    private long elapsedNanos; //time spent parsing the files of the last load
+    private final Map<String, Long> fileNanos = new ConcurrentHashMap<>(); //time spent on each file of the last load
 
     /**
      * Adventure Loader Constructor
@@ -24,125 +72,468 @@ public class AdventureLoader {
         this.adventureName = directoryName;
     }
 
+    /**
+     * Adventure Loader Constructor
+     * __________________________
+     * Initializes attributes for loading the world of a game only
+     * @param directoryName the directory in which game files live
+     */
+    AdventureLoader(String directoryName) {
+        this.adventureName = directoryName;
+    }
+
      /**
      * Load game from directory
+     * __________________________
+     * The leaderboard is looked up while the world of the game is. Both are
+     * shared with every other game played from the same directory (see
+     * WorldTemplate and Leaderboard), so they are only read from the game
+     * files by the first game that needs them; other games wait for that
+     * load on their own thread.
      */
     public void loadGame() throws IOException {
+        CompletableFuture<WorldTemplate> world = WorldTemplate.load(this.adventureName);
+        CompletableFuture<Leaderboard> leaderboard = Leaderboard.load(this.adventureName);
+        this.game.setTemplate(await(world));
+        this.game.setLeaderboard(await(leaderboard));
+    }
+
+     /**
+     * Load the world of a game
+     * __________________________
+     * The game files are read in parallel. If the game has an up to date
+     * compiled image (see WorldImage) the world comes from the image.
+     * Otherwise objects are placed once the rooms are in, while synonyms and
+     * the help text load alongside; a stale image is then recompiled from the
+     * freshly parsed world. Games whose rooms file is too large to hold in
+     * memory (see LazyRoomMap) skip the image: only the position of each room
+     * in rooms.txt is read up front and rooms are read when first used.
+     *
+     * This method only returns once every file is parsed. The first file
+     * that fails to load fails the whole load: steps that have not started
+     * are cancelled, and those still running parse into maps that are
+     * dropped with this loader.
+     *
+     * @return the world of the game, to be shared by every game played from it
+     */
+    WorldTemplate loadWorld() throws IOException {
+        long start = System.nanoTime();
+        this.roomCount = 0;
+        this.bytesRead.set(0);
+        this.fileNanos.clear();
+
+        long[] sources = WorldImage.stamp(this.adventureName); //before parsing, so edits made meanwhile make the image stale
+        WorldTemplate world;
+        if (WorldImage.isFresh(this.adventureName) && !LazyRoomMap.isWanted(new File(this.adventureName, "rooms.txt"))) {
+            CompletableFuture<WorldTemplate> image = loadAsync(WorldImage.IMAGE_FILE_NAME, this::parseImage);
+            awaitAll(image);
+            world = image.join();
+        } else {
+            CompletableFuture<Void> rooms = loadAsync("rooms.txt", () -> { parseRooms(); return null; });
+            CompletableFuture<Void> objects = rooms.thenCompose(done -> loadAsync("objects.txt", () -> { parseObjects(); return null; }));
+            CompletableFuture<Void> synonyms = loadAsync("synonyms.txt", () -> { parseSynonyms(); return null; });
+            CompletableFuture<String> help = loadAsync("help.txt", () -> parseOtherFile("help"));
+
+            awaitAll(rooms, objects, synonyms, help);
+            world = new WorldTemplate(this.adventureName, this.rooms, this.synonyms, help.join());
+
+            if (WorldImage.imageFile(this.adventureName).exists() && !(this.rooms instanceof LazyRoomMap)) {
+                WorldImage.write(world, this.adventureName, sources);
+                if (VERBOSE) System.err.println("Recompiled stale world image " + WorldImage.imageFile(this.adventureName));
+            }
+        }
+
+        this.elapsedNanos = System.nanoTime() - start;
+        if (VERBOSE) System.err.println(getThroughputReport());
+        return world;
+    }
+
+    /**
+     * Load the rooms of a game with their starting objects, e.g. after rooms.txt or objects.txt was edited.
+     *
+     * @return the rooms, by number
+     */
+    Map<Integer, Room> loadRooms() throws IOException {
         parseRooms();
         parseObjects();
+        return this.rooms;
+    }
+
+    /**
+     * Load the synonyms of a game, e.g. after synonyms.txt was edited.
+     *
+     * @return the synonyms of commands
+     */
+    Map<String, String> loadSynonyms() throws IOException {
         parseSynonyms();
-        parseLeaderboard();
-        this.game.setHelpText(parseOtherFile("help"));
+        return this.synonyms;
+    }
+
+    /**
+     * Load something every game of a directory shares, unless it is loaded
+     * or being loaded already. The load runs on the loader pool, outside
+     * the map, so games of other directories are not held up and games of
+     * the same directory only wait on the future. A load that fails is
+     * removed so that the next game tries again.
+     *
+     * @param loaded what is loaded or being loaded, by game directory
+     * @param directoryName the game directory
+     * @param task the load
+     * @return a future holding what was loaded
+     */
+    static <T> CompletableFuture<T> loadShared(Map<String, CompletableFuture<T>> loaded, String directoryName, GameFileTask<T> task) {
+        CompletableFuture<T> result = loaded.get(directoryName);
+        if (result != null) return result;
+        CompletableFuture<T> loading = new CompletableFuture<>();
+        result = loaded.putIfAbsent(directoryName, loading);
+        if (result != null) return result;
+
+        LOADER_POOL.execute(() -> {
+            try {
+                loading.complete(task.parse());
+            } catch (IOException e) {
+                loaded.remove(directoryName, loading);
+                loading.completeExceptionally(new UncheckedIOException(e));
+            } catch (RuntimeException | Error e) {
+                loaded.remove(directoryName, loading);
+                loading.completeExceptionally(e);
+            }
+        });
+        return loading;
+    }
+
+    /**
+     * Wait for a load started by loadShared.
+     *
+     * @param load the load
+     * @return what was loaded
+     * @throws IOException if the load failed to read the game files
+     */
+    static <T> T await(CompletableFuture<T> load) throws IOException {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Run one parsing step on the loader pool, timing it.
+     *
+     * @param fileName the game file the step reads, for the timing report
+     * @param task the parsing step
+     * @return a future holding the result of the step
+     */
+    private <T> CompletableFuture<T> loadAsync(String fileName, GameFileTask<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return task.parse();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                this.fileNanos.put(fileName, System.nanoTime() - start);
+            }
+        }, LOADER_POOL);
+    }
+
+    /**
+     * Wait for every parsing step, failing as soon as one of them fails.
+     * The other steps are then cancelled, so that those not yet started
+     * never run.
+     *
+     * @param steps the parsing steps to wait for
+     * @throws IOException the error of the first step that failed
+     */
+    private static void awaitAll(CompletableFuture<?>... steps) throws IOException {
+        CompletableFuture<Void> outcome = new CompletableFuture<>();
+        for (CompletableFuture<?> step : steps) {
+            step.whenComplete((result, error) -> {
+                if (error != null) outcome.completeExceptionally(error);
+            });
+        }
+        CompletableFuture.allOf(steps).thenRun(() -> outcome.complete(null));
+
+        try {
+            outcome.join();
+        } catch (CompletionException e) {
+            for (CompletableFuture<?> step : steps) step.cancel(false);
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Unwrap the error of a failed step.
+     *
+     * @param e the failure of the step
+     * @return the I/O error to throw
+     */
+    private static IOException rethrow(CompletionException e) {
+        Throwable cause = e;
+        while (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+        if (cause instanceof UncheckedIOException) return ((UncheckedIOException) cause).getCause();
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        return new IOException(cause);
+    }
+
+    /**
+     * getThroughputReport
+     * __________________________
+     * Describe how fast the last call to loadGame parsed the game files.
+     *
+     * @return rooms per second and megabytes per second of the last load
+     */
+    public String getThroughputReport() {
+        double seconds = Math.max(this.elapsedNanos, 1) / 1_000_000_000.0;
+        double megabytes = this.bytesRead.get() / 1_000_000.0;
+        StringBuilder report = new StringBuilder(String.format("Loaded %d rooms (%.2f MB) from %s in %.1f ms: %.0f rooms/sec, %.2f MB/sec",
+                this.roomCount, megabytes, this.adventureName, seconds * 1000, this.roomCount / seconds, megabytes / seconds));
+        for (String fileName : GAME_FILES) {
+            Long nanos = this.fileNanos.get(fileName);
+            if (nanos != null) report.append(String.format("%n  %-16s %8.1f ms", fileName, nanos / 1_000_000.0));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Open one of the game files for reading, counting its size towards the throughput report.
+     *
+     * @param fileName the name of the file within the game directory
+     * @return a buffered reader over the file
+     */
+    private BufferedReader openGameFile(String fileName) throws IOException {
+        this.bytesRead.addAndGet(new File(this.adventureName, fileName).length());
+        return openFile(this.adventureName, fileName);
+    }
+
+    /**
+     * Open a file of a game directory for reading.
+     *
+     * @param adventureName the game directory
+     * @param fileName the name of the file within the game directory
+     * @return a buffered reader over the file
+     */
+    static BufferedReader openFile(String adventureName, String fileName) throws IOException {
+        return new BufferedReader(new FileReader(new File(adventureName, fileName), StandardCharsets.UTF_8), BUFFER_SIZE);
     }
 
      /**
      * Parse Rooms File
      */
     private void parseRooms() throws IOException {
+        File roomsFile = new File(this.adventureName, "rooms.txt");
+        if (LazyRoomMap.isWanted(roomsFile)) {
+            this.rooms = LazyRoomMap.index(this.adventureName);
+            this.bytesRead.addAndGet(roomsFile.length());
+            this.roomCount = this.rooms.size();
+            return;
+        }
+        try (BufferedReader buff = openGameFile("rooms.txt")) {
+            this.roomCount = readRooms(buff, this.adventureName, this.rooms);
+        }
+    }
 
-        int roomNumber;
+    /**
+     * Read every room entry of a rooms file.
+     *
+     * @param buff the rooms file
+     * @param adventureName the game directory
+     * @param rooms map to add the rooms to
+     * @return the number of room entries read
+     */
+    static int readRooms(BufferedReader buff, String adventureName, Map<Integer, Room> rooms) throws IOException {
+        int count = 0;
+        StringBuilder description = new StringBuilder(); //reused for every room
+        String line = nextNonBlankLine(buff);
+        while (line != null) {
+            Room room = readRoom(buff, line, description, adventureName);
+            rooms.put(room.getRoomNumber(), room);
+            count++;
+            line = nextNonBlankLine(buff);
+        }
+        return count;
+    }
 
-        String roomFileName = this.adventureName + "/rooms.txt";
-        BufferedReader buff = new BufferedReader(new FileReader(roomFileName));
+    /**
+     * Read the rest of a room entry whose first line (the room number) has already been read.
+     * The entry ends with the blank line after its motion table, or at the end of the file.
+     *
+     * @param buff the reader positioned just after the room number
+     * @param numberLine the line holding the room number
+     * @param description a scratch buffer for the room description
+     * @param adventureName the game directory
+     * @return the room, with its motion table filled in
+     */
+    static Room readRoom(BufferedReader buff, String numberLine, StringBuilder description, String adventureName) throws IOException {
+        int roomNumber = Integer.parseInt(numberLine.trim()); //current room number
+        String roomName = buff.readLine();
 
-        while (buff.ready()) {
+        // the description runs up to the separator line
+        description.setLength(0);
+        String line = buff.readLine();
+        while (line != null && !line.equals(ROOM_SEPARATOR)) {
+            description.append(line).append('\n');
+            line = buff.readLine();
+        }
+        if (line == null) {
+            throw new IOException("Room " + roomNumber + " in " + adventureName + "/rooms.txt has no " + ROOM_SEPARATOR + " line");
+        }
+        description.append('\n');
 
-            String currRoom = buff.readLine(); // first line is the number of a room
+        Room room = new Room(roomName, roomNumber, description.toString(), adventureName);
 
-            roomNumber = Integer.parseInt(currRoom); //current room number
+        // now we make the motion table, one passage per line until a blank line
+        line = buff.readLine();
+        while (line != null && !line.isEmpty()) {
+            room.getMotionTable().addDirection(parsePassage(line));
+            line = buff.readLine();
+        }
+        return room;
+    }
 
-            // now need to get room name
-            String roomName = buff.readLine();
+    /**
+     * Parse one motion table line, e.g. "OUT        6/BIRD".
+     * Any run of whitespace may separate the direction from the destination.
+     *
+     * @param line the motion table line
+     * @return the passage described by the line
+     */
+    static Passage parsePassage(String line) {
+        int length = line.length();
+        int directionEnd = 0;
+        while (directionEnd < length && !Character.isWhitespace(line.charAt(directionEnd))) directionEnd++;
+        int destStart = directionEnd;
+        while (destStart < length && Character.isWhitespace(line.charAt(destStart))) destStart++;
+        int destEnd = length;
+        while (destEnd > destStart && Character.isWhitespace(line.charAt(destEnd - 1))) destEnd--;
 
-            // now we need to get the description
-            String roomDescription = "";
-            String line = buff.readLine();
-            while (!line.equals("-----")) {
-                roomDescription += line + "\n";
-                line = buff.readLine();
-            }
-            roomDescription += "\n";
-
-            // now we make the room object
-            Room room = new Room(roomName, roomNumber, roomDescription, adventureName);
-
-            // now we make the motion table
-            line = buff.readLine(); // reads the line after "-----"
-            while (line != null && !line.equals("")) {
-                String[] part = line.split(" \s+"); // have to use regex \\s+ as we don't know how many spaces are between the direction and the room number
-                String direction = part[0];
-                String dest = part[1];
-                if (dest.contains("/")) {
-                    String[] blockedPath = dest.split("/");
-                    String dest_part = blockedPath[0];
-                    String object = blockedPath[1];
-                    Passage entry = new Passage(direction, dest_part, object);
-                    room.getMotionTable().addDirection(entry);
-                } else {
-                    Passage entry = new Passage(direction, dest);
-                    room.getMotionTable().addDirection(entry);
-                }
-                line = buff.readLine();
-            }
-            this.game.getRooms().put(room.getRoomNumber(), room);
+        String direction = line.substring(0, directionEnd);
+        int slash = line.indexOf('/', destStart);
+        if (slash >= 0 && slash < destEnd) {
+            return new Passage(direction, line.substring(destStart, slash), line.substring(slash + 1, destEnd));
         }
+        return new Passage(direction, line.substring(destStart, destEnd));
+    }
 
+    /**
+     * Skip blank lines.
+     *
+     * @param buff the reader to read from
+     * @return the next line that is not blank, or null at the end of the file
+     */
+    private static String nextNonBlankLine(BufferedReader buff) throws IOException {
+        String line = buff.readLine();
+        while (line != null && line.isBlank()) {
+            line = buff.readLine();
+        }
+        return line;
+    }
+
+    /**
+     * Parse the compiled image of the game instead of its rooms, objects, synonyms and help files.
+     */
+    private WorldTemplate parseImage() throws IOException {
+        WorldImage image = WorldImage.open(this.adventureName);
+        this.bytesRead.addAndGet(image.getSize());
+        this.rooms = image.readRooms(this.adventureName);
+        image.readSynonyms(this.synonyms);
+        this.roomCount = image.getRoomCount();
+        return new WorldTemplate(this.adventureName, this.rooms, this.synonyms, image.getHelpText());
     }
 
      /**
      * Parse Objects File
      */
     public void parseObjects() throws IOException {
+        List<String[]> objects;
+        try (BufferedReader buff = openGameFile("objects.txt")) {
+            objects = readObjects(buff, this.adventureName);
+        }
+        for (String[] record : objects) {
+            int roomNumber = Integer.parseInt(record[2]);
+            if (this.rooms instanceof LazyRoomMap) {
+                ((LazyRoomMap) this.rooms).addStartingObject(roomNumber, record[0], record[1]);
+            } else {
+                Room location = this.rooms.get(roomNumber);
+                AdventureObject object = new AdventureObject(record[0], record[1], location);
+                location.addGameObject(object);
+            }
+        }
+    }
 
-        String objectFileName = this.adventureName + "/objects.txt";
-        BufferedReader buff = new BufferedReader(new FileReader(objectFileName));
-
-        while (buff.ready()) {
-            String objectName = buff.readLine();
+    /**
+     * Read every object entry of an objects file.
+     *
+     * @param buff the objects file
+     * @param adventureName the game directory
+     * @return the name, description and starting room number of each object, in file order
+     * @throws IOException if an entry has no location or is not followed by a blank line
+     */
+    static List<String[]> readObjects(BufferedReader buff, String adventureName) throws IOException {
+        List<String[]> objects = new ArrayList<>();
+        String objectName = nextNonBlankLine(buff);
+        while (objectName != null) {
             String objectDescription = buff.readLine();
             String objectLocation = buff.readLine();
+            if (objectLocation == null) {
+                throw new IOException("Object " + objectName + " in " + adventureName + "/objects.txt has no location");
+            }
             String separator = buff.readLine();
-            if (separator != null && !separator.isEmpty())
-                System.out.println("Formatting Error!");
-            int i = Integer.parseInt(objectLocation);
-            Room location = this.game.getRooms().get(i);
-            AdventureObject object = new AdventureObject(objectName, objectDescription, location);
-            location.addGameObject(object);
+            if (separator != null && !separator.isEmpty()) {
+                throw new IOException("Object " + objectName + " in " + adventureName + "/objects.txt is not followed by a blank line: " + separator);
+            }
+            objects.add(new String[]{objectName, objectDescription, objectLocation.trim()});
+            objectName = nextNonBlankLine(buff);
         }
-
+        return objects;
     }
 
      /**
      * Parse Synonyms File
      */
     public void parseSynonyms() throws IOException {
-        String synonymsFileName = this.adventureName + "/synonyms.txt";
-        BufferedReader buff = new BufferedReader(new FileReader(synonymsFileName));
+        try (BufferedReader buff = openGameFile("synonyms.txt")) {
+            readSynonyms(buff, this.synonyms);
+        }
+    }
+
+    /**
+     * Read every entry of a synonyms file.
+     *
+     * @param buff the synonyms file
+     * @param synonyms map to add the synonyms to
+     */
+    static void readSynonyms(BufferedReader buff, Map<String, String> synonyms) throws IOException {
         String line = buff.readLine();
-        while(line != null){
-            String[] commandAndSynonym = line.split("=");
-            String command1 = commandAndSynonym[0];
-            String command2 = commandAndSynonym[1];
-            this.game.getSynonyms().put(command1,command2);
+        while (line != null) {
+            int equals = line.indexOf('=');
+            if (equals > 0) {
+                synonyms.put(line.substring(0, equals), line.substring(equals + 1));
+            }
             line = buff.readLine();
         }
-
     }
 
     /**
      * Parse Leaderboard File
+     * __________________________
+     * Rebuild a leaderboard from its snapshot, leaderboard.txt, and the times
+     * saved since, in leaderboard.log (see LeaderboardLog).
+     *
+     * @param board the leaderboard to add the times to
+     * @return the number of lines in the log
      */
-    public void parseLeaderboard() throws IOException {
-        String leaderboardFileName = this.adventureName + "/leaderboard.txt";
-
-        BufferedReader buff = new BufferedReader(new FileReader(leaderboardFileName));
-        String line = buff.readLine();
-
-        while (line != null) { // while not EOF
-            String[] leader = line.split(",");
-            this.game.getLeaderboard().addTime(leader[0], Integer.valueOf(leader[1]));
-            line = buff.readLine();
+    int loadLeaderboard(Leaderboard board) throws IOException {
+        try (BufferedReader buff = openGameFile(LeaderboardLog.SNAPSHOT_FILE_NAME)) {
+            String line = buff.readLine();
+            while (line != null) { // while not EOF
+                LeaderboardLog.addLine(board, line);
+                line = buff.readLine();
+            }
         }
+        this.bytesRead.addAndGet(new File(this.adventureName, LeaderboardLog.LOG_FILE_NAME).length());
+        return LeaderboardLog.readLog(board, this.adventureName);
     }
 
 
@@ -152,15 +543,15 @@ public class AdventureLoader {
      * @param fileName the file to parse
      */
     public String parseOtherFile(String fileName) throws IOException {
-        String text = "";
-        fileName = this.adventureName + "/" + fileName + ".txt";
-        BufferedReader buff = new BufferedReader(new FileReader(fileName));
-        String line = buff.readLine();
-        while (line != null) { // while not EOF
-            text += line+"\n";
-            line = buff.readLine();
+        StringBuilder text = new StringBuilder();
+        try (BufferedReader buff = openGameFile(fileName + ".txt")) {
+            String line = buff.readLine();
+            while (line != null) { // while not EOF
+                text.append(line).append('\n');
+                line = buff.readLine();
+            }
         }
-        return text;
+        return text.toString();
     }
 
 }
@@ -68,4 +68,14 @@ public class AdventureObject implements Serializable {
         return this.location;
     }
 
+    /**
+     * Gives the name of the object an id in the symbols of its world, and
+     * makes the object share the world's copy of the name.
+     *
+     * @param symbols the symbols of the world
+     */
+    void internName(SymbolTable symbols){
+        this.objectName = symbols.name(symbols.intern(this.objectName));
+    }
+
 }
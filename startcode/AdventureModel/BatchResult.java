@@ -0,0 +1,128 @@
+package AdventureModel;
+
+import java.util.Arrays;
+
+/**
+ * BatchResult
+ * __________________________
+ * What each command of a script did (see GameEngine.executeBatch), kept as
+ * two flat arrays so that scripts of millions of commands stay small: the
+ * outcome of each command and the room the player was in after it.
+ */
+public final class BatchResult {
+
+    /**
+     * The player moved to another room.
+     */
+    public static final byte MOVED = 0;
+
+    /**
+     * The player moved, and on through forced rooms.
+     */
+    public static final byte FORCED = 1;
+
+    /**
+     * The command was a direction, but no passage in it was open to the player.
+     */
+    public static final byte STAYED = 2;
+
+    /**
+     * The command was a verb, such as TAKE or LOOK, and its handler ran.
+     */
+    public static final byte VERB = 3;
+
+    /**
+     * The command was not understood.
+     */
+    public static final byte INVALID = 4;
+
+    /**
+     * The player won, died or quit.
+     */
+    public static final byte GAME_OVER = 5;
+
+    private static final String[] NAMES = {"MOVED", "FORCED", "STAYED", "VERB", "INVALID", "GAME OVER"};
+
+    private byte[] outcomes = new byte[16]; //outcome of each command
+    private int[] rooms = new int[16]; //room number after each command
+    private int size; //number of commands run
+    private boolean gameOver; //true once a command ended the game
+
+    /**
+     * outcomeOf
+     * __________________________
+     * @param game a game
+     * @param output the output of the command the game interpreted last
+     * @return the outcome of the command
+     */
+    static byte outcomeOf(AdventureGame game, String output) {
+        if (output == null) return game.getLastPath().isEmpty() ? STAYED : MOVED;
+        if (output.equals("FORCED")) return FORCED;
+        if (output.equals("GAME OVER")) return GAME_OVER;
+        return game.getLastVerb() != null ? VERB : INVALID;
+    }
+
+    /**
+     * Record the outcome of the next command.
+     */
+    void add(byte outcome, int roomNumber) {
+        if (this.size == this.outcomes.length) {
+            this.outcomes = Arrays.copyOf(this.outcomes, this.size * 2);
+            this.rooms = Arrays.copyOf(this.rooms, this.size * 2);
+        }
+        this.outcomes[this.size] = outcome;
+        this.rooms[this.size] = roomNumber;
+        this.size++;
+        if (outcome == GAME_OVER) this.gameOver = true;
+    }
+
+    /**
+     * size
+     * __________________________
+     * @return the number of commands that ran; fewer than the script had if it stopped at GAME OVER
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * outcome
+     * __________________________
+     * @param index the index of a command that ran
+     * @return its outcome, one of the constants above
+     */
+    public byte outcome(int index) {
+        if (index >= this.size) throw new IndexOutOfBoundsException(index);
+        return this.outcomes[index];
+    }
+
+    /**
+     * roomNumber
+     * __________________________
+     * @param index the index of a command that ran
+     * @return the number of the room the player was in after it
+     */
+    public int roomNumber(int index) {
+        if (index >= this.size) throw new IndexOutOfBoundsException(index);
+        return this.rooms[index];
+    }
+
+    /**
+     * isGameOver
+     * __________________________
+     * @return true if a command that ran ended the game
+     */
+    public boolean isGameOver() {
+        return this.gameOver;
+    }
+
+    /**
+     * outcomeName
+     * __________________________
+     * @param outcome an outcome
+     * @return its name, e.g. MOVED
+     */
+    public static String outcomeName(byte outcome) {
+        return NAMES[outcome];
+    }
+}
@@ -0,0 +1,65 @@
+package AdventureModel;
+
+/**
+ * The verbs that exist in all games: QUIT, INVENTORY, TAKE, DROP, LOOK,
+ * HELP and COMMANDS.
+ */
+final class BuiltInCommands implements CommandProvider {
+
+    @Override
+    public void registerCommands(CommandRegistry registry) {
+        registry.register("QUIT", (game, tokens) -> "GAME OVER"); //time to stop!
+        registry.register("INVENTORY", BuiltInCommands::inventory);
+        registry.register("TAKE", BuiltInCommands::take);
+        registry.register("DROP", BuiltInCommands::drop);
+        registry.register("LOOK", BuiltInCommands::look, "L");
+        registry.register("HELP", (game, tokens) -> game.getInstructions(), "H");
+        registry.register("COMMANDS", BuiltInCommands::commands, "C");
+    }
+
+    private static String inventory(AdventureGame game, TokenBuffer tokens) {
+        if (game.getPlayer().getInventory().size() == 0) return "INVENTORY IS EMPTY";
+        return "THESE OBJECTS ARE IN YOUR INVENTORY:\n" + game.getPlayer().getInventory().toString();
+    }
+
+    private static String take(AdventureGame game, TokenBuffer tokens) {
+        if (tokens.size() < 2) return "THE TAKE COMMAND REQUIRES AN OBJECT";
+        if (tokens.size() > 2) return "INVALID COMMAND.";
+        String object = tokens.word(1);
+        if (game.getPlayer().getCurrentRoom().checkIfObjectInRoom(object)) {
+            game.getPlayer().takeObject(object);
+            return "YOU HAVE TAKEN:\n " + object;
+        } else {
+            return "THIS OBJECT IS NOT HERE:\n " + object;
+        }
+    }
+
+    private static String drop(AdventureGame game, TokenBuffer tokens) {
+        if (tokens.size() < 2) return "THE DROP COMMAND REQUIRES AN OBJECT";
+        if (tokens.size() > 2) return "INVALID COMMAND.";
+        String object = tokens.word(1);
+        if (game.getPlayer().checkIfObjectInInventory(object)) {
+            game.getPlayer().dropObject(object);
+            return "YOU HAVE DROPPED:\n " + object;
+        } else {
+            return "THIS OBJECT IS NOT IN YOUR INVENTORY:\n " + object;
+        }
+    }
+
+    private static String look(AdventureGame game, TokenBuffer tokens) {
+        return describe(game.getPlayer().getCurrentRoom());
+    }
+
+    /**
+     * @return the description of a room and the objects in it, as LOOK shows them
+     */
+    static String describe(Room room) {
+        String objects = room.getObjectString();
+        if (objects.isEmpty()) return room.getRoomDescription();
+        return room.getRoomDescription() + "\n\nObjects in this room:\n" + objects;
+    }
+
+    private static String commands(AdventureGame game, TokenBuffer tokens) {
+        return "You can move in these directions:\n\n" + game.getPlayer().getCurrentRoom().getCommands();
+    }
+}
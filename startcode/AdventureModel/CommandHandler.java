@@ -0,0 +1,20 @@
+package AdventureModel;
+
+/**
+ * The CommandHandler interface defines how a verb of the game is carried out.
+ * Handlers are registered with a CommandRegistry and are looked up by the
+ * token id of the first word of a command.
+ */
+@FunctionalInterface
+public interface CommandHandler {
+
+    /**
+     * Carries out a command whose first word is the handler's verb.
+     *
+     * @param game the game the command is for
+     * @param tokens the words of the command, the verb first
+     * @return the text to show the player, or one of the outcomes of
+     * AdventureGame.interpretAction, such as "GAME OVER" or "INVALID COMMAND."
+     */
+    String handle(AdventureGame game, TokenBuffer tokens);
+}
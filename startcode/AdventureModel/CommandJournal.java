@@ -0,0 +1,91 @@
+package AdventureModel;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * CommandJournal
+ * __________________________
+ * An append-only binary record of the commands of one game, written as the
+ * game is played (see AdventureGame.startJournal) and replayed by
+ * JournalReplay. The file holds:
+ *
+ *   header: int MAGIC, short VERSION, UTF name of the game
+ *   then per command: int timer tick (seconds), byte outcome (see
+ *   BatchResult), int room number afterwards, UTF command as typed
+ *
+ * Each command is flushed as it is recorded, so a journal survives the game
+ * crashing; a record cut short at the end of the file is ignored on replay.
+ */
+public final class CommandJournal implements Closeable {
+
+    static final int MAGIC = 0x41444A4E; //"ADJN"
+    static final short VERSION = 1;
+
+    private final DataOutputStream out; //the journal file
+
+    /**
+     * CommandJournal Constructor
+     * __________________________
+     * Open a journal to append to, writing its header if it is new.
+     *
+     * @param file the journal
+     * @param gameName the name of the game, i.e. its directory within Games
+     * @throws IOException if the journal can not be opened
+     */
+    CommandJournal(File file, String gameName) throws IOException {
+        boolean isNew = !file.exists() || file.length() == 0;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        if (isNew) {
+            this.out.writeInt(MAGIC);
+            this.out.writeShort(VERSION);
+            this.out.writeUTF(gameName);
+            this.out.flush();
+        }
+    }
+
+    /**
+     * Append one command.
+     *
+     * @param tick the time on the game timer, in seconds
+     * @param text the text holding the command
+     * @param start the offset of the command in the text
+     * @param end the offset just past the command
+     * @param outcome the outcome of the command
+     * @param roomNumber the room the player is in afterwards
+     * @throws IOException if the journal can not be written
+     */
+    void record(int tick, CharSequence text, int start, int end, byte outcome, int roomNumber) throws IOException {
+        this.out.writeInt(tick);
+        this.out.writeByte(outcome);
+        this.out.writeInt(roomNumber);
+        this.out.writeUTF(text.subSequence(start, end).toString());
+        this.out.flush();
+    }
+
+    /**
+     * readHeader
+     * __________________________
+     * Read the header of a journal.
+     *
+     * @param in the journal, at its start
+     * @return the name of the game the journal is of
+     * @throws IOException if the file is not a journal this version can read
+     */
+    static String readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a command journal");
+        short version = in.readShort();
+        if (version != VERSION) throw new IOException("Unsupported command journal version " + version);
+        return in.readUTF();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+}
@@ -0,0 +1,17 @@
+package AdventureModel;
+
+/**
+ * The CommandProvider interface lets a game add verbs without editing
+ * AdventureGame. Providers are found with java.util.ServiceLoader: list the
+ * implementing class in META-INF/services/AdventureModel.CommandProvider
+ * on the class path.
+ */
+public interface CommandProvider {
+
+    /**
+     * Registers the verbs of the provider.
+     *
+     * @param registry the registry to add the verbs to
+     */
+    void registerCommands(CommandRegistry registry);
+}
@@ -0,0 +1,92 @@
+package AdventureModel;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * CommandRegistry
+ * __________________________
+ * The verbs every game understands, other than the directions of its rooms,
+ * and the handler of each. The default registry holds the built-in verbs
+ * (see BuiltInCommands) and those of every CommandProvider on the class path.
+ *
+ * Each world compiles the registry into a dispatch table indexed by token id
+ * when it is loaded, so finding the handler of a command is one array read.
+ * Verbs registered later only reach worlds loaded after them.
+ */
+public final class CommandRegistry {
+
+    private static CommandRegistry defaultRegistry; //built-in verbs and those of the providers, loaded on first use
+
+    private final Map<String, CommandHandler> handlers = new LinkedHashMap<>(); //handler of each verb
+    private final Map<String, String> aliases = new LinkedHashMap<>(); //verb of each alias
+
+    /**
+     * getDefault
+     * __________________________
+     * @return the registry games are played with
+     */
+    public static synchronized CommandRegistry getDefault() {
+        if (defaultRegistry == null) {
+            CommandRegistry registry = new CommandRegistry();
+            new BuiltInCommands().registerCommands(registry);
+            for (CommandProvider provider : ServiceLoader.load(CommandProvider.class)) {
+                provider.registerCommands(registry);
+            }
+            defaultRegistry = registry;
+        }
+        return defaultRegistry;
+    }
+
+    /**
+     * register
+     * __________________________
+     * Add a verb, or replace the handler of a verb that is already registered.
+     *
+     * @param verb the verb, e.g. "LOOK"
+     * @param handler what the verb does
+     * @param aliases other words for the verb, e.g. "L"; synonyms of the game take precedence
+     */
+    public synchronized void register(String verb, CommandHandler handler, String... aliases) {
+        verb = verb.trim().toUpperCase(Locale.ROOT);
+        this.handlers.put(verb, handler);
+        for (String alias : aliases) this.aliases.put(alias.trim().toUpperCase(Locale.ROOT), verb);
+    }
+
+    /**
+     * getVerbs
+     * __________________________
+     * @return the registered verbs, in order of registration
+     */
+    public synchronized List<String> getVerbs() {
+        return new ArrayList<>(this.handlers.keySet());
+    }
+
+    /**
+     * getAliases
+     * __________________________
+     * @return the verb of each alias
+     */
+    public synchronized Map<String, String> getAliases() {
+        return new LinkedHashMap<>(this.aliases);
+    }
+
+    /**
+     * Compile the dispatch table of a world.
+     *
+     * @param vocabulary the vocabulary of the world, which must include every verb
+     * @return the handler of each token id, or null for tokens that are not verbs
+     */
+    synchronized CommandHandler[] compile(Vocabulary vocabulary) {
+        CommandHandler[] table = new CommandHandler[vocabulary.tokenCount()];
+        for (Map.Entry<String, CommandHandler> verb : this.handlers.entrySet()) {
+            int id = vocabulary.idOf(verb.getKey());
+            if (id != Vocabulary.UNKNOWN && table[id] == null) table[id] = verb.getValue();
+        }
+        return table;
+    }
+}
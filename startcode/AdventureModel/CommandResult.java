@@ -0,0 +1,138 @@
+package AdventureModel;
+
+import java.util.List;
+
+/**
+ * CommandResult
+ * __________________________
+ * What one command did to a game, for callers without a view (see
+ * GameEngine): where the player is now, the text a player would be shown,
+ * what entered and left their inventory, and whether the game is over.
+ */
+public final class CommandResult {
+
+    private final String command; //the command, as given
+    private final String verb; //the verb of the command, or null if it was a move or invalid
+    private final int roomNumber; //the room the player is in afterwards
+    private final String roomName; //the name of that room
+    private final List<Integer> path; //the rooms the command moved the player through
+    private final String text; //what the player is shown
+    private final List<String> taken; //names of the objects that entered the inventory
+    private final List<String> dropped; //names of the objects that left the inventory
+    private final boolean gameOver; //true if the game ended
+
+    /**
+     * CommandResult Constructor
+     * __________________________
+     * Made by GameEngine.
+     */
+    CommandResult(String command, String verb, Room room, List<Integer> path, String text,
+                  List<String> taken, List<String> dropped, boolean gameOver) {
+        this.command = command;
+        this.verb = verb;
+        this.roomNumber = room.getRoomNumber();
+        this.roomName = room.getRoomName();
+        this.path = path;
+        this.text = text;
+        this.taken = taken;
+        this.dropped = dropped;
+        this.gameOver = gameOver;
+    }
+
+    /**
+     * getCommand
+     * __________________________
+     * @return the command, as given
+     */
+    public String getCommand() {
+        return this.command;
+    }
+
+    /**
+     * getVerb
+     * __________________________
+     * @return the verb of the command, with synonyms resolved, or null if it was a move or invalid
+     */
+    public String getVerb() {
+        return this.verb;
+    }
+
+    /**
+     * getRoomNumber
+     * __________________________
+     * @return the number of the room the player is in after the command
+     */
+    public int getRoomNumber() {
+        return this.roomNumber;
+    }
+
+    /**
+     * getRoomName
+     * __________________________
+     * @return the name of the room the player is in after the command
+     */
+    public String getRoomName() {
+        return this.roomName;
+    }
+
+    /**
+     * getPath
+     * __________________________
+     * @return the numbers of the rooms the command moved the player through,
+     * forced rooms included; empty if the player did not move
+     */
+    public List<Integer> getPath() {
+        return this.path;
+    }
+
+    /**
+     * hasMoved
+     * __________________________
+     * @return true if the command moved the player
+     */
+    public boolean hasMoved() {
+        return !this.path.isEmpty();
+    }
+
+    /**
+     * getText
+     * __________________________
+     * @return the text a player is shown: the output of the command, or the
+     * description of the room they are in if the command has none
+     */
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * getTaken
+     * __________________________
+     * @return the names of the objects that entered the inventory
+     */
+    public List<String> getTaken() {
+        return this.taken;
+    }
+
+    /**
+     * getDropped
+     * __________________________
+     * @return the names of the objects that left the inventory
+     */
+    public List<String> getDropped() {
+        return this.dropped;
+    }
+
+    /**
+     * isGameOver
+     * __________________________
+     * @return true if the player won, died or quit
+     */
+    public boolean isGameOver() {
+        return this.gameOver;
+    }
+
+    @Override
+    public String toString() {
+        return this.command + " -> room " + this.roomNumber + (this.gameOver ? " (game over)" : "") + ": " + this.text;
+    }
+}
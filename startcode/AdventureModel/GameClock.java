@@ -0,0 +1,53 @@
+package AdventureModel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GameClock interface is the time a GameTimer measures, and what wakes
+ * its listeners. Games use the system clock (see system()); tests and
+ * simulations can use a VirtualClock instead, which only moves when it is
+ * told to, so timed games play out instantly and the same way every time.
+ */
+public interface GameClock {
+
+    /**
+     * Gets the time now, like System.nanoTime(): only the difference between
+     * two readings means anything.
+     *
+     * @return The time now, in nanoseconds.
+     */
+    long nanoTime();
+
+    /**
+     * Runs a task once, after a delay.
+     *
+     * @param task The task.
+     * @param delay Time until the task runs.
+     * @param unit The unit of the delay.
+     * @return The scheduled task, to cancel it.
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit);
+
+    /**
+     * A task waiting for its time.
+     */
+    interface Timeout {
+
+        /**
+         * Stops the task from running, if it has not run yet.
+         *
+         * @return True if the task was waiting, false if it ran or was cancelled already.
+         */
+        boolean cancel();
+    }
+
+    /**
+     * Gets the clock games run on: System.nanoTime(), with tasks run by one
+     * thread shared by every game.
+     *
+     * @return The system clock.
+     */
+    static GameClock system() {
+        return TimingWheel.shared();
+    }
+}
@@ -0,0 +1,191 @@
+package AdventureModel;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GameDirectoryWatcher
+ * __________________________
+ * Watches a game directory while games from it are running and reloads
+ * rooms.txt, objects.txt and synonyms.txt when they are edited. The edited
+ * files are read into a new WorldTemplate that new games start from and
+ * that the running games move onto (see WorldUpdate); players keep their
+ * place and their inventory.
+ *
+ * There is one watcher thread per game directory, shared by every game
+ * played from it. Set the adventure.hotReload system property to "false"
+ * to turn watching off. Reloads are reported on standard error when the
+ * adventure.verbose system property is "true"; failures always are.
+ */
+public class GameDirectoryWatcher {
+
+    private static final long SETTLE_MILLIS = 200; //how long to wait for an editor to finish saving
+    private static final Set<String> WATCHED_FILES = Set.of("rooms.txt", "objects.txt", "synonyms.txt");
+    private static final Map<String, GameDirectoryWatcher> WATCHERS = new ConcurrentHashMap<>(); //by game directory
+
+    private final String adventureName; //the game directory
+    private final Set<AdventureGame> games = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>())); //games to update
+    private volatile WorldTemplate template; //the world as last read
+
+    private List<String[]> objects; //objects.txt as last read
+
+    /**
+     * GameDirectoryWatcher Constructor
+     * __________________________
+     *
+     * @param adventureName the game directory to watch
+     */
+    private GameDirectoryWatcher(String adventureName) {
+        this.adventureName = adventureName;
+    }
+
+    /**
+     * register
+     * __________________________
+     * Keep a running game up to date with its game files. The game is only
+     * held weakly, so it does not need to be unregistered.
+     *
+     * @param game the game to update
+     */
+    public static void register(AdventureGame game) {
+        if ("false".equalsIgnoreCase(System.getProperty("adventure.hotReload"))) return;
+        GameDirectoryWatcher watcher = WATCHERS.computeIfAbsent(game.getDirectoryName(), directory -> {
+            GameDirectoryWatcher created = new GameDirectoryWatcher(directory);
+            created.template = game.getTemplate();
+            Thread thread = new Thread(created::watch, "adventure-watcher " + directory);
+            thread.setDaemon(true);
+            thread.start();
+            return created;
+        });
+        watcher.games.add(game);
+    }
+
+    /**
+     * Wait for changes to the watched files and reload them.
+     */
+    private void watch() {
+        Path directory = Paths.get(this.adventureName);
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            readBaseline();
+            while (true) {
+                Set<String> changed = new HashSet<>();
+                collect(service.take(), changed);
+                WatchKey key;
+                while ((key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+                if (!changed.isEmpty()) reload(changed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Stopped watching " + this.adventureName + ": " + e.getMessage());
+        } finally {
+            WATCHERS.remove(this.adventureName, this);
+        }
+    }
+
+    /**
+     * Note which watched files a batch of events is about.
+     */
+    private static void collect(WatchKey key, Set<String> changed) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (context instanceof Path && WATCHED_FILES.contains(context.toString())) changed.add(context.toString());
+        }
+        key.reset();
+    }
+
+    /**
+     * Read the files as they are when watching starts, to compare later versions against.
+     */
+    private void readBaseline() throws IOException {
+        try (BufferedReader buff = AdventureLoader.openFile(this.adventureName, "objects.txt")) {
+            this.objects = AdventureLoader.readObjects(buff, this.adventureName);
+        }
+    }
+
+    /**
+     * Re-read the files that changed and hand the differences to every game.
+     *
+     * @param changed names of the files that changed
+     */
+    private void reload(Set<String> changed) {
+        try {
+            WorldTemplate current = this.template;
+            Map<Integer, Room> rooms = null; //null while the rooms of the current template still hold
+            Map<String, String> synonyms = current.getSynonyms();
+            List<String[]> addedObjects = null;
+            List<String[]> removedObjects = null;
+
+            if (changed.contains("rooms.txt") || changed.contains("objects.txt")) {
+                rooms = new AdventureLoader(this.adventureName).loadRooms(); //starting objects are part of the rooms
+            }
+            if (changed.contains("objects.txt")) {
+                List<String[]> newer;
+                try (BufferedReader buff = AdventureLoader.openFile(this.adventureName, "objects.txt")) {
+                    newer = AdventureLoader.readObjects(buff, this.adventureName);
+                }
+                addedObjects = difference(newer, this.objects);
+                removedObjects = difference(this.objects, newer);
+                this.objects = newer;
+            }
+            if (changed.contains("synonyms.txt")) {
+                synonyms = new AdventureLoader(this.adventureName).loadSynonyms();
+            }
+
+            //the current template is in use by games, so its rooms are shared as they are rather than built into a new world
+            WorldTemplate newer = rooms == null ? current.withSynonyms(synonyms)
+                    : new WorldTemplate(this.adventureName, rooms, synonyms, current.getHelpText());
+            WorldTemplate.replace(newer);
+            this.template = newer;
+
+            WorldUpdate update = new WorldUpdate(newer, addedObjects, removedObjects);
+            List<AdventureGame> targets;
+            synchronized (this.games) {
+                targets = new ArrayList<>(this.games);
+            }
+            for (AdventureGame game : targets) game.queueWorldUpdate(update);
+
+            StringBuilder report = new StringBuilder("Reloaded " + changed + " in " + this.adventureName + "; rooms: " + newer.getRooms().size());
+            if (addedObjects != null) report.append("; objects added: ").append(addedObjects.size()).append(", removed: ").append(removedObjects.size());
+            if (AdventureLoader.VERBOSE) System.err.println(report);
+        } catch (IOException | RuntimeException e) {
+            //most likely the file is still being written; the next change will trigger another reload
+            System.err.println("Could not reload " + changed + " in " + this.adventureName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the object entries of the first list that are not in the second, counting duplicates
+     */
+    private static List<String[]> difference(List<String[]> from, List<String[]> minus) {
+        Map<List<String>, Integer> counts = new HashMap<>();
+        for (String[] object : minus) counts.merge(List.of(object), 1, Integer::sum);
+        List<String[]> result = new ArrayList<>();
+        for (String[] object : from) {
+            Integer count = counts.get(List.of(object));
+            if (count == null || count == 0) result.add(object);
+            else counts.put(List.of(object), count - 1);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,210 @@
+package AdventureModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * GameEngine
+ * __________________________
+ * Plays a game without a view, for servers, load tests and the command line
+ * (see AdventureGameCli). Each command gives back a CommandResult holding
+ * what a view would show: the room the player ends up in, the text, what
+ * entered and left the inventory, and whether the game is over. Scripts of
+ * many commands run through executeBatch instead, which only records the
+ * outcome of each command and the room it left the player in. Once the
+ * time limit of the game runs out (see GameTimer), the game is over and no
+ * further command runs.
+ *
+ * Nothing here touches JavaFX, so an engine starts on a bare JVM.
+ */
+public final class GameEngine implements AutoCloseable {
+
+    public static final String TIME_UP = "TIME IS UP. GAME OVER"; //text of a command sent after the time limit ran out
+
+    private final AdventureGame game; //the game being played
+    private final Set<AdventureObject> carried = new HashSet<>(); //the inventory before the command, reused
+    private boolean over; //true once the game has ended
+
+    /**
+     * GameEngine Constructor
+     * __________________________
+     * Start a new game.
+     *
+     * @param gameName the name of the game, i.e. its directory within Games
+     */
+    public GameEngine(String gameName) {
+        this(new AdventureGame(gameName));
+    }
+
+    /**
+     * GameEngine Constructor
+     * __________________________
+     * Play a game that was already started, e.g. one loaded from a save.
+     *
+     * @param game the game
+     */
+    public GameEngine(AdventureGame game) {
+        this.game = game;
+    }
+
+    /**
+     * start
+     * __________________________
+     * @return the room the player is in, as a result with no command
+     */
+    public CommandResult start() {
+        Room room = this.game.getPlayer().getCurrentRoom();
+        return new CommandResult("", null, room, List.of(), BuiltInCommands.describe(room), List.of(), List.of(), this.over);
+    }
+
+    /**
+     * execute
+     * __________________________
+     * Interpret one command.
+     *
+     * @param command the command, as a player would type it
+     * @return what the command did
+     */
+    public CommandResult execute(String command) {
+        Player player = this.game.getPlayer();
+        if (isOutOfTime()) { //the command comes too late to run
+            this.over = true;
+            return new CommandResult(command, null, player.getCurrentRoom(), List.of(), TIME_UP, List.of(), List.of(), true);
+        }
+        this.carried.clear();
+        this.carried.addAll(player.getInventoryObjects());
+
+        String output = this.game.interpretAction(command);
+        List<Room> moved = this.game.getLastPath();
+        List<Integer> path;
+        if (moved.isEmpty()) {
+            path = List.of();
+        } else {
+            path = new ArrayList<>(moved.size());
+            for (Room room : moved) path.add(room.getRoomNumber());
+            path = Collections.unmodifiableList(path);
+        }
+
+        boolean gameOver = "GAME OVER".equals(output);
+        if (gameOver) this.over = true;
+        Room room = player.getCurrentRoom();
+        String text;
+        if (output == null || output.equals("FORCED") || (gameOver && !moved.isEmpty())) {
+            text = BuiltInCommands.describe(room); //show where the player is, as after a move in the view
+        } else {
+            text = output;
+        }
+
+        List<String> taken = List.of();
+        List<String> dropped = List.of();
+        if (player.getInventoryObjects().size() != this.carried.size() || !this.carried.containsAll(player.getInventoryObjects())) {
+            taken = new ArrayList<>();
+            for (AdventureObject object : player.getInventoryObjects()) {
+                if (!this.carried.remove(object)) taken.add(object.getName());
+            }
+            dropped = new ArrayList<>();
+            for (AdventureObject object : this.carried) dropped.add(object.getName());
+            taken = Collections.unmodifiableList(taken);
+            dropped = Collections.unmodifiableList(dropped);
+        }
+        return new CommandResult(command, this.game.getLastVerb(), room, path, text, taken, dropped, gameOver);
+    }
+
+    /**
+     * executeBatch
+     * __________________________
+     * Run a script of commands, e.g. "N;TAKE BIRD;S", and stop at the first
+     * that ends the game.
+     *
+     * @param script commands separated by semicolons or line breaks
+     * @return the outcome of each command that ran
+     */
+    public BatchResult executeBatch(CharSequence script) {
+        return executeBatch(script, true);
+    }
+
+    /**
+     * executeBatch
+     * __________________________
+     * Run a script of commands in one pass. Commands are separated by
+     * semicolons or line breaks; empty ones are skipped. Each is tokenized
+     * where it stands in the script, so running a command copies nothing out
+     * of the script and a move allocates nothing.
+     *
+     * @param script commands separated by semicolons or line breaks
+     * @param stopAtGameOver true to stop at the first command that ends the game
+     * @return the outcome of each command that ran
+     */
+    public BatchResult executeBatch(CharSequence script, boolean stopAtGameOver) {
+        BatchResult result = new BatchResult();
+        AdventureGame game = this.game;
+        int length = script.length();
+        for (int start = 0, end; start < length; start = end + 1) {
+            end = start;
+            char c;
+            while (end < length && (c = script.charAt(end)) != ';' && c != '\n') end++;
+            if (isBlank(script, start, end)) continue;
+            if (isOutOfTime()) {
+                this.over = true;
+                result.add(BatchResult.GAME_OVER, game.getPlayer().getCurrentRoom().getRoomNumber());
+                break;
+            }
+
+            byte outcome = BatchResult.outcomeOf(game, game.interpretAction(script, start, end));
+            result.add(outcome, game.getPlayer().getCurrentRoom().getRoomNumber());
+
+            if (outcome == BatchResult.GAME_OVER) {
+                this.over = true;
+                if (stopAtGameOver) break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true once the time limit of the game has run out
+     */
+    private boolean isOutOfTime() {
+        GameTimer timer = this.game.getGameTimer();
+        return timer != null && timer.getRemainingTime() <= 0;
+    }
+
+    private static boolean isBlank(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * isOver
+     * __________________________
+     * @return true once the player won, died or quit, or the time limit ran out
+     */
+    public boolean isOver() {
+        return this.over;
+    }
+
+    /**
+     * getGame
+     * __________________________
+     * @return the game being played
+     */
+    public AdventureGame getGame() {
+        return this.game;
+    }
+
+    /**
+     * close
+     * __________________________
+     * Stop the timer of the game, and close its journal, if any.
+     */
+    @Override
+    public void close() {
+        this.game.stopJournal();
+        if (this.game.getGameTimer() != null) this.game.getGameTimer().stopTimer();
+    }
+}
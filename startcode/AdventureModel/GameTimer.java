@@ -4,65 +4,132 @@ import java.io.Serializable;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The GameTimer class represents a timer for tracking the progress of the game.
  * It allows for starting, stopping, and querying the current and remaining time.
+ *
+ * The timer does not tick. It keeps the time elapsed in the segments it ran
+ * before, and the time on its GameClock at which the running segment started,
+ * together in one immutable State that is swapped atomically; the current
+ * and remaining time are worked out from it when they are read. So a timer
+ * needs no thread, can be read from any thread, and measures time to the
+ * nanosecond, and starting or stopping it is a single compare-and-set.
+ *
+ * Listeners (see addListener) are told when the time passes a multiple of
+ * the granularity they ask for, and when it runs out: while the timer runs,
+ * each listener has one task waiting on the clock for its next multiple.
+ * A timer without listeners schedules nothing.
  */
 public class GameTimer implements Serializable {
 
-    private transient ScheduledExecutorService scheduler; // Scheduler for updating the current time
-    public Integer currentTime; // Current time on the game timer
-    public Integer remainingTime; // Remaining time on the game timer
-    public Integer endingTime; // Ending time on the game timer
-    public int initialTime = 93; // Initial time limit for the game timer
-    private boolean isRunning; // Flag indicating whether the timer is currently running
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
 
+    private transient GameClock clock; // The time the timer measures
+    private transient AtomicReference<State> state; // Time elapsed, and whether the timer is running
+    private transient List<Ticker> tickers; // Listeners and their next ticks; also the lock for scheduling ticks
+    public int initialTime = 93; // Initial time limit for the game timer, in seconds
+
+    /**
+     * State
+     * __________________________
+     * The time elapsed in the segments the timer ran before, and when the
+     * running segment started, if the timer is running.
+     */
+    private record State(long elapsed, long since, boolean running) {
+
+        /**
+         * @param now the time now, from the clock
+         * @return the time elapsed, in nanoseconds
+         */
+        long elapsedAt(long now) {
+            return this.running ? this.elapsed + (now - this.since) : this.elapsed;
+        }
+    }
 
     /**
      * GameTimer Constructor
      * __________________________
-     * Initializes the GameTimer with default values.
+     * Initializes the GameTimer with default values, on the system clock.
      */
     public GameTimer() {
-        this.currentTime = 0;
-        this.remainingTime = initialTime;
-        this.endingTime = 0;
-        this.scheduler = Executors.newScheduledThreadPool(1);
+        this(GameClock.system());
+    }
+
+    /**
+     * GameTimer Constructor
+     * __________________________
+     * Initializes the GameTimer with default values.
+     *
+     * @param clock The clock the timer measures time on.
+     */
+    public GameTimer(GameClock clock) {
+        this.clock = clock;
+        this.state = new AtomicReference<>(new State(0, 0, false));
+        this.tickers = new CopyOnWriteArrayList<>();
     }
 
     /**
      * startTimer
      * __________________________
-     * Starts the game timer, scheduling regular updates to the current time.
+     * Starts the game timer, or resumes it where it was stopped.
+     * Starting a running timer does nothing.
      */
     public void startTimer() {
-        scheduler = Executors.newScheduledThreadPool(1);
-        scheduler.scheduleAtFixedRate(this::updateCurrentTime, 0, 1, TimeUnit.SECONDS);
+        State current = state.get();
+        while (!current.running()) {
+            State started = new State(current.elapsed(), clock.nanoTime(), true);
+            if (state.compareAndSet(current, started)) {
+                reschedule();
+                return;
+            }
+            current = state.get();
+        }
     }
 
     /**
      * stopTimer
      * __________________________
-     * Stops the game timer.
+     * Stops the game timer, keeping the time elapsed.
      */
     public void stopTimer() {
-        scheduler.shutdown();
+        State current = state.get();
+        while (current.running()) {
+            State stopped = new State(Math.min(current.elapsedAt(clock.nanoTime()), limit()), 0, false);
+            if (state.compareAndSet(current, stopped)) {
+                reschedule();
+                return;
+            }
+            current = state.get();
+        }
     }
 
     /**
      * isRunning
      * __________________________
      * Checks whether the game timer is currently running.
+     * A timer that ran out of time is not running.
      *
      * @return True if the timer is running, false otherwise.
      */
     public boolean isRunning() {
-        isRunning = !scheduler.isShutdown();
-        return isRunning;
+        State current = state.get();
+        return current.running() && current.elapsedAt(clock.nanoTime()) < limit();
+    }
+
+    /**
+     * getElapsedNanos
+     * __________________________
+     * Gets the time elapsed on the game timer, at most its time limit.
+     *
+     * @return The time elapsed in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return Math.min(state.get().elapsedAt(clock.nanoTime()), limit());
     }
 
     /**
@@ -70,10 +137,10 @@ public class GameTimer implements Serializable {
      * __________________________
      * Gets the current time on the game timer.
      *
-     * @return The current time in seconds.
+     * @return The current time in whole seconds.
      */
     public int getCurrentTime() {
-        return currentTime;
+        return (int) (getElapsedNanos() / SECOND);
     }
 
     /**
@@ -81,10 +148,26 @@ public class GameTimer implements Serializable {
      * __________________________
      * Gets the remaining time on the game timer.
      *
-     * @return The remaining time in seconds.
+     * @return The remaining time in whole seconds.
      */
-    public Integer getRemainingTime() {
-        return remainingTime;
+    public int getRemainingTime() {
+        return initialTime - getCurrentTime();
+    }
+
+    /**
+     * setCurrentTime
+     * __________________________
+     * Sets the time on the timer, e.g. to the time a journal recorded.
+     *
+     * @param seconds the current time in seconds
+     */
+    void setCurrentTime(int seconds) {
+        long elapsed = Math.min(seconds * SECOND, limit());
+        State current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, new State(elapsed, clock.nanoTime(), current.running())));
+        reschedule();
     }
 
     /**
@@ -95,35 +178,119 @@ public class GameTimer implements Serializable {
      * @return The ending time in seconds.
      */
     public int getEndingTime() {
-        endingTime = currentTime;
-        return endingTime;
+        return getCurrentTime();
+    }
+
+    /**
+     * addListener
+     * __________________________
+     * Tell a listener each time the running timer passes a multiple of the
+     * granularity, e.g. every second to show the time left, and when it runs out.
+     *
+     * @param listener The listener.
+     * @param granularity The time between ticks.
+     * @param unit The unit of the granularity.
+     */
+    public void addListener(TimerListener listener, long granularity, TimeUnit unit) {
+        if (granularity <= 0) throw new IllegalArgumentException("Granularity must be positive: " + granularity);
+        Ticker ticker = new Ticker(listener, unit.toNanos(granularity));
+        synchronized (tickers) {
+            tickers.add(ticker);
+            ticker.schedule();
+        }
     }
 
     /**
-     * updateCurrentTime
+     * removeListener
      * __________________________
-     * Update the current time on the game timer.
-     * Increments the current time by one second and checks
-     * if the timer has reached its initial time limit.
-     * If the limit is reached, the timer is stopped,
-     * and relevant attributes are reset.
-     */
-    private void updateCurrentTime() {
-        currentTime++;
-
-        if (currentTime >= initialTime) {
-            stopTimer();
-            currentTime = initialTime;
-            endingTime = 0;
-            remainingTime = 0;
-        } else {
-            remainingTime = initialTime - currentTime;
+     * Stop telling a listener about the time.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(TimerListener listener) {
+        synchronized (tickers) {
+            for (Ticker ticker : tickers) {
+                if (ticker.listener == listener) {
+                    ticker.cancel();
+                    tickers.remove(ticker);
+                }
+            }
+        }
+    }
+
+    /*
+     * After the timer was started, stopped or set, schedule the next tick of
+     * each listener again, or none if the timer is stopped.
+     */
+    private void reschedule() {
+        if (tickers.isEmpty()) return;
+        synchronized (tickers) {
+            for (Ticker ticker : tickers) ticker.schedule();
         }
     }
 
+    /*
+     * A listener, and its next tick waiting on the clock.
+     */
+    private final class Ticker {
+        private final TimerListener listener; // Who to tell
+        private final long granularity; // Nanoseconds between ticks
+        private GameClock.Timeout next; // The next tick, or null; guarded by tickers
+        private int generation; // Counts the ticks scheduled, so a tick cancelled too late can tell; guarded by tickers
+
+        Ticker(TimerListener listener, long granularity) {
+            this.listener = listener;
+            this.granularity = granularity;
+        }
+
+        /*
+         * Cancel the next tick, and schedule it again if the timer is running.
+         * Called holding tickers.
+         */
+        void schedule() {
+            cancel();
+            State current = state.get();
+            long elapsed = current.elapsedAt(clock.nanoTime());
+            if (!current.running() || elapsed >= limit()) return;
+            long due = Math.min((elapsed / granularity + 1) * granularity, limit());
+            int scheduled = generation;
+            next = clock.schedule(() -> fire(scheduled), due - elapsed, TimeUnit.NANOSECONDS);
+        }
+
+        void cancel() {
+            generation++;
+            if (next != null) next.cancel();
+            next = null;
+        }
+
+        /*
+         * Tell the listener, and schedule the tick after, unless the timer
+         * was stopped, set or ran out meanwhile.
+         */
+        private void fire(int scheduled) {
+            synchronized (tickers) {
+                if (scheduled != generation) return;
+                next = null;
+                listener.tick(GameTimer.this);
+                if (state.get().elapsedAt(clock.nanoTime()) >= limit()) {
+                    listener.expired(GameTimer.this);
+                } else if (next == null) { // the listener may have rescheduled already
+                    schedule();
+                }
+            }
+        }
+    }
+
+    /*
+     * The time limit, in nanoseconds.
+     */
+    private long limit() {
+        return initialTime * SECOND;
+    }
+
     /**
      * readObject
-     * Deserializing the GameTimer object.
+     * Deserializing the GameTimer object. A loaded timer is stopped, on the system clock.
      *
      * @param ois The ObjectInputStream used for deserialization.
      * @throws ClassNotFoundException If the class of a serialized object cannot be found.
@@ -131,7 +298,9 @@ public class GameTimer implements Serializable {
      */
     private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
         ois.defaultReadObject();
-        this.scheduler = Executors.newScheduledThreadPool(1);
+        this.clock = GameClock.system();
+        this.state = new AtomicReference<>(new State(ois.readLong(), 0, false));
+        this.tickers = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -143,7 +312,6 @@ public class GameTimer implements Serializable {
      */
     private void writeObject(ObjectOutputStream oos) throws IOException {
         oos.defaultWriteObject();
-        oos.writeInt(currentTime);
-        oos.writeInt(remainingTime);
+        oos.writeLong(getElapsedNanos());
     }
 }
@@ -0,0 +1,119 @@
+package AdventureModel;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * ImageRoomMap
+ * __________________________
+ * The rooms of a world template loaded from its compiled image (see
+ * WorldImage). Opening the map only reads the room numbers, the passages,
+ * which go into the WorldGraph of the world, and the names of the starting
+ * objects; a room's name, description and objects are decoded from the
+ * mapped image the first time the room is asked for. Decoded rooms are kept,
+ * since a world small enough to have an image fits in memory.
+ */
+final class ImageRoomMap extends AbstractMap<Integer, Room> implements IndexedRooms {
+
+    private final WorldImage image; //the mapped image
+    private final String adventureName; //the game directory
+    private final int[] roomNumbers; //room numbers, sorted, matching the room records of the image
+    private final WorldGraph graph; //the passages of every room
+    private final List<String> objectNames; //names of the starting objects, interned in the graph's symbols
+    private final AtomicReferenceArray<Room> rooms; //rooms decoded so far, matching roomNumbers
+
+    /**
+     * ImageRoomMap Constructor
+     * __________________________
+     *
+     * @param image the mapped image
+     * @param adventureName the game directory, stored in each room
+     */
+    ImageRoomMap(WorldImage image, String adventureName) {
+        this.image = image;
+        this.adventureName = adventureName;
+        this.roomNumbers = new int[image.getRoomCount()];
+        for (int i = 0; i < this.roomNumbers.length; i++) this.roomNumbers[i] = image.roomNumber(i);
+        this.graph = image.readGraph();
+        this.objectNames = image.readObjectNames(this.graph.getSymbols());
+        this.rooms = new AtomicReferenceArray<>(this.roomNumbers.length);
+    }
+
+    @Override
+    public WorldGraph getGraph() {
+        return this.graph;
+    }
+
+    @Override
+    public List<String> getObjectNames() {
+        return this.objectNames;
+    }
+
+    /**
+     * @return the position of a room number in the image, or a negative number
+     */
+    private int slot(Object key) {
+        if (!(key instanceof Integer)) return -1;
+        return Arrays.binarySearch(this.roomNumbers, (Integer) key);
+    }
+
+    @Override
+    public Room get(Object key) {
+        int slot = slot(key);
+        if (slot < 0) return null;
+        Room room = this.rooms.get(slot);
+        if (room != null) return room;
+        room = this.image.readRoom(slot, this.adventureName, this.graph);
+        return this.rooms.compareAndSet(slot, null, room) ? room : this.rooms.get(slot); //another game decoded it first
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return slot(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return this.roomNumbers.length;
+    }
+
+    /**
+     * Every room of the world, in room number order. Iterating decodes each
+     * room that has not been used yet.
+     */
+    @Override
+    public Set<Map.Entry<Integer, Room>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<Integer, Room>> iterator() {
+                return new Iterator<>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.next < roomNumbers.length;
+                    }
+
+                    @Override
+                    public Map.Entry<Integer, Room> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        Integer roomNumber = roomNumbers[this.next++];
+                        return new AbstractMap.SimpleImmutableEntry<>(roomNumber, get(roomNumber));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return roomNumbers.length;
+            }
+        };
+    }
+}
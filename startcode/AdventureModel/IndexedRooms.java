@@ -0,0 +1,29 @@
+package AdventureModel;
+
+import java.util.List;
+
+/**
+ * IndexedRooms
+ * __________________________
+ * The rooms of a world template when they are read the first time they are
+ * used instead of all at load time (see LazyRoomMap and ImageRoomMap). Such
+ * a map builds the WorldGraph of the world and interns the names of the
+ * objects its rooms start with while it is indexed, before any game can
+ * see it; neither changes afterwards.
+ */
+interface IndexedRooms {
+
+    /**
+     * getGraph
+     * __________________________
+     * @return the passages of every room
+     */
+    WorldGraph getGraph();
+
+    /**
+     * getObjectNames
+     * __________________________
+     * @return the names of every object the rooms start with
+     */
+    List<String> getObjectNames();
+}
@@ -0,0 +1,166 @@
+package AdventureModel;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * JournalReplay
+ * __________________________
+ * Replays command journals (see CommandJournal) against new games, as fast
+ * as the commands run, and checks that every command has the outcome and
+ * leaves the player in the room the journal recorded. The game's timer is
+ * set to the recorded tick before each command, so conditions on the time
+ * left come out the same.
+ *
+ * Replayed games are not live: they start no timer thread and do not watch
+ * their game files, and they share the loaded world of their directory, so
+ * a large corpus of journals replays cheaply, in parallel.
+ */
+public final class JournalReplay {
+
+    private JournalReplay() {
+    }
+
+    /**
+     * Report
+     * __________________________
+     * The result of replaying one journal.
+     */
+    public static final class Report {
+        private final Path journal; //the journal replayed
+        private final int commands; //commands replayed, up to and including a divergence
+        private final String divergence; //the first command that came out differently, or null
+
+        Report(Path journal, int commands, String divergence) {
+            this.journal = journal;
+            this.commands = commands;
+            this.divergence = divergence;
+        }
+
+        /**
+         * @return the journal replayed
+         */
+        public Path getJournal() {
+            return this.journal;
+        }
+
+        /**
+         * @return the number of commands replayed
+         */
+        public int getCommands() {
+            return this.commands;
+        }
+
+        /**
+         * @return a description of the first command that came out differently, or null if all matched
+         */
+        public String getDivergence() {
+            return this.divergence;
+        }
+
+        /**
+         * @return true if every command came out as recorded
+         */
+        public boolean matches() {
+            return this.divergence == null;
+        }
+
+        @Override
+        public String toString() {
+            return this.journal + ": " + (matches() ? this.commands + " commands match" : this.divergence);
+        }
+    }
+
+    /**
+     * replay
+     * __________________________
+     * Replay one journal and stop at the first command that does not come
+     * out as recorded.
+     *
+     * @param journal the journal
+     * @return what the replay found
+     * @throws IOException if the journal can not be read
+     */
+    public static Report replay(Path journal) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+            AdventureGame game = new AdventureGame(CommandJournal.readHeader(in), false);
+            int count = 0;
+            while (true) {
+                int tick;
+                byte outcome;
+                int roomNumber;
+                String command;
+                try {
+                    tick = in.readInt();
+                    outcome = in.readByte();
+                    roomNumber = in.readInt();
+                    command = in.readUTF();
+                } catch (EOFException e) {
+                    break; //the end, or a record the game did not get to finish
+                }
+                count++;
+
+                game.getGameTimer().setCurrentTime(tick);
+                byte actual = BatchResult.outcomeOf(game, game.interpretAction(command));
+                int actualRoom = game.getPlayer().getCurrentRoom().getRoomNumber();
+                if (actual != outcome || actualRoom != roomNumber) {
+                    return new Report(journal, count, "command " + count + " \"" + command + "\" at " + tick + "s: expected "
+                            + BatchResult.outcomeName(outcome) + " in room " + roomNumber + ", got "
+                            + BatchResult.outcomeName(actual) + " in room " + actualRoom);
+                }
+            }
+            return new Report(journal, count, null);
+        }
+    }
+
+    /**
+     * Replay the journals named on the command line, and every journal
+     * (*.advj) in the directories named, then list those that diverged.
+     *
+     * @param args journals and directories of journals
+     */
+    public static void main(String[] args) throws IOException {
+        List<Path> journals = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Path.of(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    files.filter(file -> file.toString().endsWith(".advj")).forEach(journals::add);
+                }
+            } else {
+                journals.add(path);
+            }
+        }
+
+        long start = System.nanoTime();
+        List<Report> reports = journals.parallelStream().map(journal -> {
+            try {
+                return replay(journal);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not replay " + journal, e);
+            }
+        }).toList();
+        long nanos = System.nanoTime() - start;
+
+        long commands = 0;
+        int diverged = 0;
+        for (Report report : reports) {
+            commands += report.getCommands();
+            if (!report.matches()) {
+                diverged++;
+                System.out.println(report);
+            }
+        }
+        System.out.printf("Replayed %d journals (%d commands) in %.1f ms; %d diverged%n",
+                reports.size(), commands, nanos / 1e6, diverged);
+        if (diverged > 0) System.exit(1);
+    }
+}
@@ -0,0 +1,378 @@
+package AdventureModel;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * LazyRoomMap
+ * __________________________
+ * The rooms of a world template that is too large to keep in memory. Loading
+ * only records where each room starts in rooms.txt; a room is read from the
+ * file the first time it is asked for and kept in a bounded cache. The
+ * passages of every room are small, so they are read into the WorldGraph of
+ * the world while indexing and the rooms read later share it. Template
+ * rooms never change (each game changes its own copies, see SessionRooms),
+ * so a room that falls out of the cache can always be read again.
+ *
+ * The rooms file stays open for as long as the map is used, so a rooms.txt
+ * that is replaced by a new file leaves the map reading the one it indexed.
+ * A rooms.txt that is rewritten in place no longer matches the index; such
+ * an edit is picked up by the template loaded from the new file (see
+ * GameDirectoryWatcher), never by this map. Until the games move to it, a
+ * room whose bytes no longer match the index fails to read rather than
+ * being read wrong.
+ */
+public class LazyRoomMap extends AbstractMap<Integer, Room> implements IndexedRooms {
+
+    /**
+     * Size of rooms.txt above which rooms are loaded lazily, unless the
+     * adventure.lazyRooms system property says otherwise.
+     */
+    public static final long LAZY_THRESHOLD_BYTES = 64L << 20;
+
+    /**
+     * Number of rooms kept in memory, unless the
+     * adventure.roomCacheSize system property says otherwise.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private final String adventureName; //the game directory
+    private final int[] roomNumbers; //room numbers, sorted
+    private final long[] starts; //byte offset in rooms.txt of each room, matching roomNumbers
+    private final long[] ends; //byte offset in rooms.txt just past each room, matching roomNumbers
+    private final WorldGraph graph; //the passages of every room
+    private final Map<Integer, List<String[]>> startingObjects = new HashMap<>(); //name and description of the objects each room starts with
+    private final LinkedHashMap<Integer, Room> cache; //recently used rooms, least recently used first
+    private final FileChannel file; //rooms.txt as it was indexed, kept open
+    private final long length; //size of rooms.txt when it was indexed
+
+    /**
+     * LazyRoomMap Constructor
+     * __________________________
+     *
+     * @param adventureName the game directory
+     * @param roomNumbers room numbers, sorted and distinct
+     * @param starts byte offset of each room in rooms.txt
+     * @param ends byte offset just past each room in rooms.txt
+     * @param graph the passages of every room
+     * @param cacheSize number of rooms to keep in memory
+     * @param file the open rooms file and what it was like when it was indexed
+     */
+    private LazyRoomMap(String adventureName, int[] roomNumbers, long[] starts, long[] ends, WorldGraph graph, int cacheSize, PinnedFile file) {
+        this.adventureName = adventureName;
+        this.file = file.channel();
+        this.length = file.length();
+        this.graph = graph;
+        this.roomNumbers = roomNumbers;
+        this.starts = starts;
+        this.ends = ends;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Room> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * isWanted
+     * __________________________
+     * Decide whether the rooms of a game should be loaded lazily.
+     *
+     * @param roomsFile the rooms file of the game
+     * @return true if the adventure.lazyRooms property is "true", or if it is
+     * not set and the file is larger than LAZY_THRESHOLD_BYTES
+     */
+    public static boolean isWanted(File roomsFile) {
+        String setting = System.getProperty("adventure.lazyRooms");
+        if (setting != null) return Boolean.parseBoolean(setting);
+        return roomsFile.length() > LAZY_THRESHOLD_BYTES;
+    }
+
+    /**
+     * index
+     * __________________________
+     * Scan rooms.txt once and record where each room starts and ends. Room
+     * numbers and passages are the only parts of the file that are decoded.
+     *
+     * @param adventureName the game directory
+     * @return a map holding no rooms yet
+     */
+    public static LazyRoomMap index(String adventureName) throws IOException {
+        Path roomsFile = new File(adventureName, "rooms.txt").toPath();
+        FileChannel channel = FileChannel.open(roomsFile, StandardOpenOption.READ);
+        try {
+            IndexBuilder builder = new IndexBuilder();
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+            long position = 0;
+            int read = channel.read(chunk, position);
+            while (read >= 0) {
+                for (int i = 0; i < read; i++) builder.accept(chunk.get(i));
+                position += read;
+                chunk.clear();
+                read = channel.read(chunk, position);
+            }
+            builder.finish();
+            return sortIndex(adventureName, Arrays.copyOf(builder.numbers, builder.count), Arrays.copyOf(builder.starts, builder.count),
+                    Arrays.copyOf(builder.ends, builder.count), builder.passages.build(), new PinnedFile(channel, position));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The rooms file as it was indexed: the channel it was read through
+     * and the number of bytes read.
+     */
+    private record PinnedFile(FileChannel channel, long length) {
+    }
+
+    /**
+     * Finds the room entries of rooms.txt one byte at a time, following the same
+     * structure as AdventureLoader: a room number, a name and description up to
+     * the "-----" line, then passages up to a blank line.
+     */
+    private static class IndexBuilder {
+        private static final int EXPECT_NUMBER = 0, IN_HEADER = 1, IN_PASSAGES = 2;
+
+        int count;
+        int[] numbers = new int[1024];
+        long[] starts = new long[1024];
+        long[] ends = new long[1024];
+        final WorldGraph.Builder passages = new WorldGraph.Builder();
+
+        private int state = EXPECT_NUMBER;
+        private byte[] line = new byte[64]; //start of the current line; passage lines are kept whole
+        private int lineLength; //full length of the current line
+        private boolean blank = true; //is the current line whitespace only?
+        private long lineStart; //offset of the current line
+        private long position; //offset of the next byte
+
+        void accept(byte b) {
+            position++;
+            if (b == '\n') {
+                endLine();
+                return;
+            }
+            if (lineLength == line.length && state == IN_PASSAGES) line = Arrays.copyOf(line, lineLength * 2);
+            if (lineLength < line.length) line[lineLength] = b;
+            lineLength++;
+            if (b != ' ' && b != '\t' && b != '\r') blank = false;
+        }
+
+        void finish() {
+            if (lineLength > 0) endLine();
+            if (count > 0) ends[count - 1] = position;
+        }
+
+        private void endLine() {
+            int length = Math.min(lineLength, line.length);
+            if (length > 0 && line[length - 1] == '\r') length--;
+            if (state == EXPECT_NUMBER && !blank) {
+                if (count == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, count * 2);
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                if (count > 0) ends[count - 1] = lineStart;
+                numbers[count] = Integer.parseInt(new String(line, 0, length, StandardCharsets.US_ASCII).trim());
+                starts[count] = lineStart;
+                passages.room(numbers[count]);
+                count++;
+                state = IN_HEADER;
+            } else if (state == IN_HEADER && lineLength <= 6 && length == 5
+                    && new String(line, 0, 5, StandardCharsets.US_ASCII).equals("-----")) {
+                state = IN_PASSAGES;
+            } else if (state == IN_PASSAGES && length == 0) {
+                state = EXPECT_NUMBER;
+            } else if (state == IN_PASSAGES) {
+                passages.passage(AdventureLoader.parsePassage(new String(line, 0, length, StandardCharsets.UTF_8)));
+            }
+            lineStart = position;
+            lineLength = 0;
+            blank = true;
+        }
+    }
+
+    /**
+     * Sort the index by room number. As with eager loading, a room number that
+     * appears twice refers to its last entry in the file.
+     */
+    private static LazyRoomMap sortIndex(String adventureName, int[] numbers, long[] starts, long[] ends, WorldGraph graph, PinnedFile file) {
+        int cacheSize = Integer.getInteger("adventure.roomCacheSize", DEFAULT_CACHE_SIZE);
+        boolean sorted = true;
+        for (int i = 1; i < numbers.length && sorted; i++) sorted = numbers[i - 1] < numbers[i];
+        if (sorted) return new LazyRoomMap(adventureName, numbers, starts, ends, graph, cacheSize, file);
+
+        Integer[] order = new Integer[numbers.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> numbers[a] != numbers[b] ? Integer.compare(numbers[a], numbers[b]) : Integer.compare(a, b));
+        int count = 0;
+        int[] sortedNumbers = new int[numbers.length];
+        long[] sortedStarts = new long[numbers.length];
+        long[] sortedEnds = new long[numbers.length];
+        for (Integer i : order) {
+            if (count > 0 && sortedNumbers[count - 1] == numbers[i]) count--; //keep the last entry
+            sortedNumbers[count] = numbers[i];
+            sortedStarts[count] = starts[i];
+            sortedEnds[count] = ends[i];
+            count++;
+        }
+        return new LazyRoomMap(adventureName, Arrays.copyOf(sortedNumbers, count),
+                Arrays.copyOf(sortedStarts, count), Arrays.copyOf(sortedEnds, count), graph, cacheSize, file);
+    }
+
+    /**
+     * addStartingObject
+     * __________________________
+     * Record an object that a room starts with, to be added when the room is read.
+     * Only used while the world is loading.
+     *
+     * @param roomNumber the room the object starts in
+     * @param name the name of the object
+     * @param description the description of the object
+     */
+    synchronized void addStartingObject(int roomNumber, String name, String description) {
+        SymbolTable symbols = this.graph.getSymbols();
+        name = symbols.name(symbols.intern(name)); //every room read later shares the one copy of the name
+        this.startingObjects.computeIfAbsent(roomNumber, n -> new ArrayList<>()).add(new String[]{name, description});
+    }
+
+    @Override
+    public WorldGraph getGraph() {
+        return this.graph;
+    }
+
+    @Override
+    public synchronized List<String> getObjectNames() {
+        List<String> names = new ArrayList<>();
+        for (List<String[]> objects : this.startingObjects.values()) {
+            for (String[] object : objects) names.add(object[0]);
+        }
+        return names;
+    }
+
+    /**
+     * @return the position of a room number in the index, or a negative number
+     */
+    private int slot(Object key) {
+        if (!(key instanceof Integer)) return -1;
+        return Arrays.binarySearch(this.roomNumbers, (Integer) key);
+    }
+
+    @Override
+    public synchronized Room get(Object key) {
+        Room room = this.cache.get(key);
+        if (room != null) return room;
+        int slot = slot(key);
+        if (slot < 0) return null;
+        room = readRoom(slot);
+        this.cache.put(room.getRoomNumber(), room);
+        return room;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return slot(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return this.roomNumbers.length;
+    }
+
+    /**
+     * residentCount
+     * __________________________
+     * @return the number of rooms currently held in memory by the map
+     */
+    public synchronized int residentCount() {
+        return this.cache.size();
+    }
+
+    /**
+     * Read one room from rooms.txt, along with the objects it starts with.
+     *
+     * @param slot the position of the room in the index
+     * @return the room
+     */
+    private Room readRoom(int slot) {
+        int length = (int) (this.ends[slot] - this.starts[slot]);
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        try {
+            if (this.file.size() != this.length) throw new IOException("rooms.txt was rewritten since it was indexed");
+            while (bytes.hasRemaining()) {
+                if (this.file.read(bytes, this.starts[slot] + bytes.position()) < 0) break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read room " + this.roomNumbers[slot] + " of " + this.adventureName, e);
+        }
+        try {
+            BufferedReader buff = new BufferedReader(new StringReader(new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8)));
+            String numberLine = buff.readLine();
+            while (numberLine != null && numberLine.isBlank()) numberLine = buff.readLine();
+            Room room = AdventureLoader.readRoom(buff, numberLine, new StringBuilder(), this.adventureName);
+            if (room.getRoomNumber() != this.roomNumbers[slot]) throw new IOException("rooms.txt was rewritten since it was indexed");
+            room.useGraph(this.graph);
+            for (String[] object : this.startingObjects.getOrDefault(room.getRoomNumber(), List.of())) {
+                room.addGameObject(new AdventureObject(object[0], object[1], room));
+            }
+            return room;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not parse room " + this.roomNumbers[slot] + " of " + this.adventureName, e);
+        }
+    }
+
+    /**
+     * Every room of the world, in room number order. Iterating reads each room
+     * that is not in memory, so it should be avoided for large worlds.
+     */
+    @Override
+    public Set<Map.Entry<Integer, Room>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<Integer, Room>> iterator() {
+                return new Iterator<>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.next < roomNumbers.length;
+                    }
+
+                    @Override
+                    public Map.Entry<Integer, Room> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        Integer roomNumber = roomNumbers[this.next++];
+                        return new AbstractMap.SimpleImmutableEntry<>(roomNumber, get(roomNumber));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return roomNumbers.length;
+            }
+        };
+    }
+}
@@ -1,57 +1,267 @@
 package AdventureModel;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /** Leaderboard
  * __________________________
- * This class creates and keeps track of the Leaderboard object in the game.
- * It also holds the top 3 current best times set by the players.
+ * This class keeps the best times set by the players of a game, to the
+ * millisecond: the top K,
+ * one per player, 3 unless the adventure.leaderboardSize system property
+ * says otherwise. Every game played from the same directory shares its
+ * board (see forDirectory), so many sessions can finish at once: times are
+ * kept in a skip list ordered by time then name, and a player's best time
+ * in a map by name, so adding a time takes O(log K) and never blocks other
+ * players. The board is read through snapshot(), which gives the times in
+ * order as an immutable list that is only rebuilt after the board changes.
+ * The board of a directory is saved through a LeaderboardLog (see save).
  */
 
 public class Leaderboard implements Serializable {
 
-    public static HashMap<String, Integer> bestTimes;
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("adventure.leaderboardSize", 3);
+    private static final Map<String, CompletableFuture<Leaderboard>> BOARDS = new ConcurrentHashMap<>(); //loaded or loading, by game directory
+
+    private final String directoryName; //the game directory whose board this is, or null
+    private final int capacity; //most times kept
+    private transient ConcurrentSkipListSet<Entry> ranking; //the times kept, best first
+    private transient ConcurrentHashMap<String, Entry> bestByName; //the time kept for each player
+    private transient AtomicInteger size; //number of times in ranking
+    private transient AtomicLong version; //counts changes to the board
+    private transient volatile Snapshot snapshot; //the board as last read
+    private transient volatile LeaderboardLog log; //where the board of a directory is saved, or null
+
+    /** Entry
+     * __________________________
+     * A player's best time, in milliseconds. Entries order by time, then by name.
+     */
+    public record Entry(String name, long millis) implements Comparable<Entry>, Serializable {
+        @Override
+        public int compareTo(Entry other) {
+            int byTime = Long.compare(this.millis, other.millis);
+            return byTime != 0 ? byTime : this.name.compareTo(other.name);
+        }
+
+        /** toSeconds
+         * __________________________
+         * @return the time in seconds, to the millisecond, e.g. "12.345"
+         */
+        public String toSeconds() {
+            return String.format(Locale.ROOT, "%d.%03d", this.millis / 1000, this.millis % 1000);
+        }
+    }
+
+    private record Snapshot(long version, List<Entry> entries) {
+    }
 
     /** Leaderboard
      * __________________________
-     * Initialize the leaderboard.
+     * Initialize an empty leaderboard of the top DEFAULT_CAPACITY times.
      */
     public Leaderboard() {
-        bestTimes = new HashMap<>();
+        this(DEFAULT_CAPACITY);
+    }
+
+    /** Leaderboard
+     * __________________________
+     * Initialize an empty leaderboard.
+     *
+     * @param capacity the number of best times to keep
+     */
+    public Leaderboard(int capacity) {
+        this(null, capacity);
+    }
+
+    private Leaderboard(String directoryName, int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("A leaderboard keeps at least one time, not " + capacity);
+        this.directoryName = directoryName;
+        this.capacity = capacity;
+        init();
+    }
+
+    private void init() {
+        this.ranking = new ConcurrentSkipListSet<>();
+        this.bestByName = new ConcurrentHashMap<>();
+        this.size = new AtomicInteger();
+        this.version = new AtomicLong();
+    }
+
+    /** forDirectory
+     * __________________________
+     * Get the leaderboard of a game directory, reading its leaderboard.txt
+     * if no game has used it yet.
+     *
+     * @param directoryName the game directory
+     * @return the leaderboard shared by every game of the directory
+     * @throws IOException if leaderboard.txt cannot be read
+     */
+    public static Leaderboard forDirectory(String directoryName) throws IOException {
+        return AdventureLoader.await(load(directoryName));
+    }
+
+    /** load
+     * __________________________
+     * Start reading the leaderboard of a game directory, unless it is read
+     * or being read already (see AdventureLoader.loadShared).
+     *
+     * @param directoryName the game directory
+     * @return a future holding the leaderboard shared by every game of the directory
+     */
+    static CompletableFuture<Leaderboard> load(String directoryName) {
+        return AdventureLoader.loadShared(BOARDS, directoryName, () -> {
+            Leaderboard board = new Leaderboard(directoryName, DEFAULT_CAPACITY);
+            int logLines = new AdventureLoader(directoryName).loadLeaderboard(board);
+            board.log = new LeaderboardLog(board, directoryName, logLines);
+            return board;
+        });
     }
 
     /** addTime
      * __________________________
-     * Add the current Player's name and time into the bestTimes Hashmap to be shown on the leaderboard.
-     * Only add up to 3 best times.
+     * Add the current Player's name and time to the leaderboard, if it is
+     * among the best times and better than the time the player already has.
+     *
+     * @param name the name of the player
+     * @param millis the time of the player, in milliseconds
+     * @return true if the time made it onto the board
      */
-    public void addTime(String name, Integer time) {
+    public boolean addTime(String name, long millis) {
+        Entry entry = new Entry(name, millis);
+        if (this.size.get() >= this.capacity) {
+            Entry worst = worst();
+            if (worst != null && entry.compareTo(worst) > 0) return false; //not good enough; nothing to change
+        }
+
+        boolean[] added = {false};
+        this.bestByName.compute(name, (player, kept) -> { //one change at a time for each player
+            if (kept != null && kept.millis() <= millis && this.ranking.contains(kept)) return kept;
+            this.ranking.add(entry);
+            this.size.incrementAndGet();
+            if (kept != null && this.ranking.remove(kept)) this.size.decrementAndGet();
+            added[0] = true;
+            return entry;
+        });
+        if (!added[0]) return false;
 
-        if (bestTimes.size() < 3) {
-            bestTimes.put(name, time);
+        while (this.size.get() > this.capacity) { //drop the worst times
+            Entry dropped = this.ranking.pollLast();
+            if (dropped == null) break;
+            this.size.decrementAndGet();
+            this.bestByName.remove(dropped.name(), dropped);
+            if (dropped == entry) added[0] = false;
         }
-        else {
-            if (bestTimes.containsKey(name)) {
-                if (bestTimes.get(name) > time) {
-                    bestTimes.replace(name, time);
-                }
-            }
-            else {
-                int highest = -1;
-                String highKey = "";
-
-                for (String key : bestTimes.keySet()) {
-                    if (bestTimes.get(key) > highest) {
-                        highest = bestTimes.get(key);
-                        highKey = key;
-                    }
-                }
-
-                if (highest > time){
-                    bestTimes.remove(highKey);
-                    bestTimes.put(name, time);
-                }
-            }
+        this.version.incrementAndGet();
+        return added[0];
+    }
+
+    private Entry worst() {
+        try {
+            return this.ranking.last();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    /** snapshot
+     * __________________________
+     * @return the times on the board, best first, as an immutable list
+     */
+    public List<Entry> snapshot() {
+        Snapshot last = this.snapshot;
+        long version = this.version.get();
+        if (last != null && last.version() == version) return last.entries();
+
+        List<Entry> entries = new ArrayList<>(this.capacity);
+        for (Entry entry : this.ranking) {
+            if (entries.size() == this.capacity) break;
+            entries.add(entry);
+        }
+        entries = Collections.unmodifiableList(entries);
+        this.snapshot = new Snapshot(version, entries);
+        return entries;
+    }
+
+    /** save
+     * __________________________
+     * Save the times on the board to the files of its game directory. The
+     * times are written by a background thread; this returns at once.
+     *
+     * @return completes once the times are on disk
+     * @throws IllegalStateException if the board belongs to no game directory
+     */
+    public CompletableFuture<Void> save() {
+        LeaderboardLog log = this.log;
+        if (log == null) throw new IllegalStateException("This leaderboard belongs to no game directory");
+        return log.save(snapshot());
+    }
+
+    /** getTime
+     * __________________________
+     * @param name the name of a player
+     * @return the player's time on the board in milliseconds, or null if the player is not on it
+     */
+    public Long getTime(String name) {
+        Entry entry = this.bestByName.get(name);
+        return entry == null || !this.ranking.contains(entry) ? null : entry.millis(); //dropped while being added
+    }
+
+    /** size
+     * __________________________
+     * @return the number of times on the board
+     */
+    public int size() {
+        return Math.min(this.size.get(), this.capacity);
+    }
+
+    /** getCapacity
+     * __________________________
+     * @return the number of best times the board keeps
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /** getDirectoryName
+     * __________________________
+     * @return the game directory whose board this is, or null if it belongs to no directory
+     */
+    public String getDirectoryName() {
+        return this.directoryName;
+    }
+
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+        oos.writeObject(new ArrayList<>(snapshot()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
+        ois.defaultReadObject();
+        init();
+        for (Entry entry : (List<Entry>) ois.readObject()) addTime(entry.name(), entry.millis());
+    }
+
+    /*
+     * A loaded game shares the board of its directory again, which is newer
+     * than the one saved with the game.
+     */
+    private Object readResolve() throws ObjectStreamException {
+        if (this.directoryName == null) return this;
+        try {
+            return forDirectory(this.directoryName);
+        } catch (IOException e) {
+            InvalidObjectException error = new InvalidObjectException("Could not load the leaderboard of " + this.directoryName);
+            error.initCause(e);
+            throw error;
         }
     }
 }
@@ -0,0 +1,264 @@
+package AdventureModel;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * LeaderboardLog
+ * __________________________
+ * Keeps the leaderboard of a game directory on disk. The board is kept in
+ * two files of "name,seconds" lines, the seconds to the millisecond, e.g.
+ * "amy,12.345"; whole seconds, as older boards hold, read as well.
+ * leaderboard.txt is a snapshot of the board,
+ * and leaderboard.log, the times saved since the snapshot was written. The
+ * board is the snapshot with the log added to it (see
+ * AdventureLoader.loadLeaderboard); a player's best time wins whatever the
+ * order of the lines, so the log is only ever appended to.
+ *
+ * Saves are handed to one writer thread, which appends every save waiting
+ * with one write and one force to the disk, so players finishing together
+ * share the cost. A line cut short by a crash is ignored when the log is
+ * read. Once COMPACT_AFTER lines are in the log the writer writes a new
+ * snapshot to a temporary file, renames it over leaderboard.txt and empties
+ * the log; a crash at any point leaves the board whole. The writer is a
+ * daemon thread, so a shutdown hook waits for the saves already handed to
+ * it before the JVM exits, e.g. when the window is closed right after a
+ * time is entered.
+ */
+final class LeaderboardLog {
+
+    static final String SNAPSHOT_FILE_NAME = "leaderboard.txt";
+    static final String LOG_FILE_NAME = "leaderboard.log";
+    static final int COMPACT_AFTER = 64; //lines in the log before it is folded into the snapshot
+    private static final long EXIT_WAIT_SECONDS = 5; //longest the JVM waits on exit for saves to reach the disk
+
+    private final Leaderboard board; //the board kept
+    private final Path snapshotFile; //leaderboard.txt
+    private final Path logFile; //leaderboard.log
+    private final BlockingQueue<Save> saves = new LinkedBlockingQueue<>(); //waiting for the writer
+    private final Set<Leaderboard.Entry> written; //times in the snapshot or the log; writer thread only
+    private int logLines; //lines in the log; writer thread only
+    private FileChannel log; //open on the log, once the writer first writes to it; writer thread only
+    private volatile Thread writer; //the writer thread, started by the first save
+
+    /*
+     * Times to save, and what to complete once they are on disk.
+     */
+    private record Save(List<Leaderboard.Entry> entries, CompletableFuture<Void> done) {
+    }
+
+    /**
+     * LeaderboardLog Constructor
+     * __________________________
+     *
+     * @param board the board, as read from the snapshot and the log
+     * @param directoryName the game directory
+     * @param logLines the number of lines in the log
+     */
+    LeaderboardLog(Leaderboard board, String directoryName, int logLines) {
+        this.board = board;
+        this.snapshotFile = Path.of(directoryName, SNAPSHOT_FILE_NAME);
+        this.logFile = Path.of(directoryName, LOG_FILE_NAME);
+        this.written = new HashSet<>(board.snapshot());
+        this.logLines = logLines;
+    }
+
+    /**
+     * save
+     * __________________________
+     * Append the times on the board that are not on disk yet. Returns at once.
+     *
+     * @param entries the board, from Leaderboard.snapshot
+     * @return completes once the times are on disk
+     */
+    CompletableFuture<Void> save(List<Leaderboard.Entry> entries) {
+        startWriter();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        this.saves.add(new Save(entries, done));
+        return done;
+    }
+
+    private void startWriter() {
+        if (this.writer != null) return;
+        synchronized (this) {
+            if (this.writer != null) return;
+            Thread thread = new Thread(this::run, "leaderboard-log " + this.logFile.getParent());
+            thread.setDaemon(true);
+            thread.start();
+            this.writer = thread;
+            try {
+                Runtime.getRuntime().addShutdownHook(new Thread(this::flushOnExit, "leaderboard-flush " + this.logFile.getParent()));
+            } catch (IllegalStateException e) {
+                //the JVM is already exiting; this save is not waited for
+            }
+        }
+    }
+
+    /*
+     * Wait for every save handed to the writer so far: saves are written in
+     * order, so an empty save queued behind them completes once they are on disk.
+     */
+    private void flushOnExit() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        this.saves.add(new Save(List.of(), done));
+        try {
+            done.get(EXIT_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            //the writer already reported it
+        } catch (InterruptedException | TimeoutException e) {
+            System.err.println("Exited before the leaderboard was saved to " + this.logFile);
+        }
+    }
+
+    /*
+     * Write the saves as they come, all of those waiting at once, then
+     * compact the log if it has grown long enough.
+     */
+    private void run() {
+        List<Save> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(this.saves.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            this.saves.drainTo(batch);
+            try {
+                append(batch);
+                for (Save save : batch) save.done().complete(null);
+            } catch (IOException e) {
+                System.err.println("Could not save the leaderboard to " + this.logFile + ": " + e);
+                for (Save save : batch) save.done().completeExceptionally(e);
+            }
+            batch.clear();
+
+            if (this.logLines >= COMPACT_AFTER) {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    System.err.println("Could not compact " + this.logFile + ": " + e); //the log still holds the board
+                }
+            }
+        }
+    }
+
+    private void append(List<Save> batch) throws IOException {
+        Set<Leaderboard.Entry> unwritten = new HashSet<>();
+        StringBuilder lines = new StringBuilder();
+        for (Save save : batch) {
+            for (Leaderboard.Entry entry : save.entries()) {
+                if (!this.written.contains(entry) && unwritten.add(entry)) appendLine(lines, entry);
+            }
+        }
+        if (unwritten.isEmpty()) return;
+
+        FileChannel log = openLog();
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) log.write(buffer);
+        log.force(false); //one commit for the whole batch
+        this.written.addAll(unwritten);
+        this.logLines += unwritten.size();
+    }
+
+    private FileChannel openLog() throws IOException {
+        if (this.log == null) {
+            this.log = FileChannel.open(this.logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return this.log;
+    }
+
+    /*
+     * Write the board as it is to a new snapshot, then empty the log. A
+     * crash before the rename leaves the old snapshot and the log; a crash
+     * after it the new snapshot and a log that adds nothing to it.
+     */
+    private void compact() throws IOException {
+        List<Leaderboard.Entry> entries = this.board.snapshot();
+        StringBuilder lines = new StringBuilder();
+        for (Leaderboard.Entry entry : entries) appendLine(lines, entry);
+
+        Path temporary = this.snapshotFile.resolveSibling(SNAPSHOT_FILE_NAME + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) out.write(buffer);
+            out.force(true);
+        }
+        Files.move(temporary, this.snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        FileChannel log = openLog();
+        log.truncate(0);
+        log.force(true);
+        this.written.clear();
+        this.written.addAll(entries);
+        this.logLines = 0;
+    }
+
+    private static void appendLine(StringBuilder lines, Leaderboard.Entry entry) {
+        lines.append(entry.name()).append(',').append(entry.toSeconds()).append('\n');
+    }
+
+    /**
+     * readLog
+     * __________________________
+     * Add the times in the log of a game directory to a board.
+     *
+     * @param board the board, as read from the snapshot
+     * @param directoryName the game directory
+     * @return the number of lines read
+     * @throws IOException if the log exists but cannot be read
+     */
+    static int readLog(Leaderboard board, String directoryName) throws IOException {
+        Path logFile = Path.of(directoryName, LOG_FILE_NAME);
+        if (!Files.exists(logFile)) return 0;
+        String text = Files.readString(logFile, StandardCharsets.UTF_8);
+        int lines = 0;
+        int start = 0;
+        int end;
+        while ((end = text.indexOf('\n', start)) >= 0) { //a last line with no end was cut short
+            if (addLine(board, text.substring(start, end))) lines++;
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    /**
+     * addLine
+     * __________________________
+     * Add the time on one "name,seconds" line to a board. The seconds may
+     * be whole, as in boards written before times were kept to the millisecond.
+     *
+     * @param board the board
+     * @param line the line
+     * @return true if the line held a time
+     */
+    static boolean addLine(Leaderboard board, String line) {
+        int comma = line.lastIndexOf(',');
+        if (comma < 0) return false;
+        try {
+            long millis = new BigDecimal(line.substring(comma + 1).trim()).movePointRight(3).setScale(0, RoundingMode.HALF_UP).longValueExact();
+            if (millis < 0) return false;
+            board.addTime(line.substring(0, comma), millis);
+            return true;
+        } catch (NumberFormatException | ArithmeticException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package AdventureModel;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * ObjectIndex
+ * __________________________
+ * A set of objects in the order they were added, indexed by name, so
+ * checking for, finding and removing an object by name do not depend on
+ * how many objects there are. Several objects may share a name; they are
+ * found in the order they were added, and removing any one of them does
+ * not depend on how many share the name either.
+ */
+public class ObjectIndex implements Serializable, Iterable<AdventureObject> {
+
+    private final LinkedHashSet<AdventureObject> objects; //every object, in the order added
+    private final Map<String, Object> byName; //the object with each name, or a set of them in the order added if several share it
+
+    /**
+     * ObjectIndex Constructor
+     * __________________________
+     * Makes an empty index.
+     */
+    public ObjectIndex() {
+        this.objects = new LinkedHashSet<>();
+        this.byName = new HashMap<>();
+    }
+
+    /**
+     * ObjectIndex Constructor
+     * __________________________
+     * Makes a copy of another index.
+     *
+     * @param other the index to copy
+     */
+    public ObjectIndex(ObjectIndex other) {
+        this.objects = new LinkedHashSet<>(other.objects);
+        this.byName = new HashMap<>(other.byName.size() * 2);
+        for (Map.Entry<String, Object> entry : other.byName.entrySet()) {
+            Object value = entry.getValue();
+            this.byName.put(entry.getKey(), value instanceof AdventureObject ? value : new LinkedHashSet<>(sameName(value)));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static LinkedHashSet<AdventureObject> sameName(Object value) {
+        return (LinkedHashSet<AdventureObject>) value;
+    }
+
+    /**
+     * add
+     * __________________________
+     * @param object the object to add
+     * @return true if the object was not in the index yet
+     */
+    public boolean add(AdventureObject object) {
+        if (!this.objects.add(object)) return false;
+        Object value = this.byName.get(object.getName());
+        if (value == null) {
+            this.byName.put(object.getName(), object);
+        } else if (value instanceof AdventureObject) {
+            LinkedHashSet<AdventureObject> sameName = new LinkedHashSet<>();
+            sameName.add((AdventureObject) value);
+            sameName.add(object);
+            this.byName.put(object.getName(), sameName);
+        } else {
+            sameName(value).add(object);
+        }
+        return true;
+    }
+
+    /**
+     * remove
+     * __________________________
+     * @param object the object to remove
+     * @return true if the object was in the index
+     */
+    public boolean remove(AdventureObject object) {
+        if (!this.objects.remove(object)) return false;
+        Object value = this.byName.get(object.getName());
+        if (value instanceof AdventureObject) {
+            this.byName.remove(object.getName());
+        } else {
+            LinkedHashSet<AdventureObject> sameName = sameName(value);
+            sameName.remove(object);
+            if (sameName.size() == 1) this.byName.put(object.getName(), sameName.iterator().next());
+        }
+        return true;
+    }
+
+    /**
+     * get
+     * __________________________
+     * @param name the name of an object
+     * @return the first object added with that name, or null
+     */
+    public AdventureObject get(String name) {
+        Object value = this.byName.get(name);
+        if (value == null || value instanceof AdventureObject) return (AdventureObject) value;
+        return sameName(value).iterator().next();
+    }
+
+    /**
+     * contains
+     * __________________________
+     * @param name the name of an object
+     * @return true if an object with that name is in the index
+     */
+    public boolean contains(String name) {
+        return this.byName.containsKey(name);
+    }
+
+    /**
+     * size
+     * __________________________
+     * @return the number of objects
+     */
+    public int size() {
+        return this.objects.size();
+    }
+
+    /**
+     * isEmpty
+     * __________________________
+     * @return true if there are no objects
+     */
+    public boolean isEmpty() {
+        return this.objects.isEmpty();
+    }
+
+    @Override
+    public Iterator<AdventureObject> iterator() {
+        return Collections.unmodifiableCollection(this.objects).iterator();
+    }
+
+    /**
+     * objects
+     * __________________________
+     * @return read-only live view of the objects, in the order added
+     */
+    public Collection<AdventureObject> objects() {
+        return Collections.unmodifiableCollection(this.objects);
+    }
+
+    /**
+     * names
+     * __________________________
+     * @return read-only live view of the names of the objects, in the order added
+     */
+    public Collection<String> names() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<String> iterator() {
+                Iterator<AdventureObject> objects = ObjectIndex.this.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return objects.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return objects.next().getName();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object name) {
+                return name instanceof String && ObjectIndex.this.contains((String) name);
+            }
+
+            @Override
+            public int size() {
+                return ObjectIndex.this.size();
+            }
+        };
+    }
+}
@@ -22,7 +22,8 @@ public class Passage implements Serializable {
     private int destinationRoom;
 
     /**
-     * The name of the object required to move along this passage.
+     * The name of the object required to move along this passage,
+     * or a condition on the player (see PassageCondition).
      */
     private String keyName;
 
@@ -57,6 +58,20 @@ public class Passage implements Serializable {
         this.isBlocked = true;
     }
 
+    /**
+     * MotionTableEntry constructor for passages whose destination is already a number.
+     *
+     * @param direction A string representation of a direction.
+     * @param roomNumber The number of the destination room.
+     * @param key The key if the passage is blocked, or null if it is open.
+     */
+    Passage(String direction, int roomNumber, String key) {
+        this.direction = direction;
+        this.destinationRoom = roomNumber;
+        this.keyName = key;
+        this.isBlocked = key != null;
+    }
+
     /**
      * Returns the direction associated with this motion table entry.
      *
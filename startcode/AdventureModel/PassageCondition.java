@@ -0,0 +1,315 @@
+package AdventureModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PassageCondition
+ * __________________________
+ * A gate on a passage that is more than "requires object X". In rooms.txt
+ * the condition follows the destination after a slash, without spaces:
+ *
+ *   BIRD             the player carries BIRD (a plain key, as before)
+ *   !BIRD            the player does not carry BIRD
+ *   @5               the player has visited room 5
+ *   TIME<30          fewer than 30 seconds are left; also <=, >, >= and =
+ *   BIRD&BOOK        all of the parts hold
+ *   BIRD|BOOK        any of the parts holds
+ *   (A|B)&!C         parentheses group; ! binds tightest, then &, then |
+ *
+ * A condition is compiled once, when its world loads, into a tree of
+ * predicates whose object names are already symbol ids, so testing it on a
+ * move neither allocates nor looks at strings. Plain keys never get here:
+ * the WorldGraph tests them with a single bit of the player's inventory.
+ */
+abstract class PassageCondition {
+
+    /**
+     * test
+     * __________________________
+     * @param game the game whose player wants to move
+     * @return true if the passage is open to the player
+     */
+    abstract boolean test(AdventureGame game);
+
+    /**
+     * isPlainKey
+     * __________________________
+     * @param text the condition of a passage
+     * @return true if the condition is just the name of an object to carry
+     */
+    static boolean isPlainKey(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (isOperator(text.charAt(i))) return false;
+        }
+        return !text.isEmpty();
+    }
+
+    private static boolean isOperator(char c) {
+        return c == '&' || c == '|' || c == '!' || c == '@' || c == '(' || c == ')' || c == '<' || c == '>' || c == '=';
+    }
+
+    /**
+     * compile
+     * __________________________
+     * Compile the condition of a passage.
+     *
+     * @param text the condition, as written after the slash
+     * @param symbols the symbols of the world; object names it does not have yet are added
+     * @return the condition
+     * @throws IllegalArgumentException if the condition is not well formed
+     */
+    static PassageCondition compile(String text, SymbolTable symbols) {
+        Parser parser = new Parser(text, symbols);
+        PassageCondition condition = parser.any();
+        if (parser.position < text.length()) throw parser.error("unexpected " + text.charAt(parser.position));
+        return condition;
+    }
+
+    /**
+     * Reads a condition left to right; one method per level of precedence.
+     */
+    private static class Parser {
+        private final String text;
+        private final SymbolTable symbols;
+        private int position; //next character to read
+
+        Parser(String text, SymbolTable symbols) {
+            this.text = text;
+            this.symbols = symbols;
+        }
+
+        PassageCondition any() {
+            List<PassageCondition> parts = new ArrayList<>();
+            parts.add(all());
+            while (accept('|')) parts.add(all());
+            return parts.size() == 1 ? parts.get(0) : new Any(parts.toArray(new PassageCondition[0]));
+        }
+
+        PassageCondition all() {
+            List<PassageCondition> parts = new ArrayList<>();
+            parts.add(unary());
+            while (accept('&')) parts.add(unary());
+            return parts.size() == 1 ? parts.get(0) : new All(parts.toArray(new PassageCondition[0]));
+        }
+
+        PassageCondition unary() {
+            if (accept('!')) return new Not(unary());
+            if (accept('(')) {
+                PassageCondition inner = any();
+                if (!accept(')')) throw error("missing )");
+                return inner;
+            }
+            if (accept('@')) return new Visited(number());
+            String name = name();
+            if (name.equals("TIME") && this.position < this.text.length() && isComparison(this.text.charAt(this.position))) {
+                int comparison = comparison();
+                return new TimeLeft(comparison, number());
+            }
+            return new Carrying(this.symbols, this.symbols.intern(name));
+        }
+
+        private boolean isComparison(char c) {
+            return c == '<' || c == '>' || c == '=';
+        }
+
+        private int comparison() {
+            char first = this.text.charAt(this.position++);
+            boolean orEqual = first != '=' && accept('=');
+            if (first == '=') return TimeLeft.EQUAL;
+            if (first == '<') return orEqual ? TimeLeft.AT_MOST : TimeLeft.LESS;
+            return orEqual ? TimeLeft.AT_LEAST : TimeLeft.MORE;
+        }
+
+        private String name() {
+            int start = this.position;
+            while (this.position < this.text.length() && !isOperator(this.text.charAt(this.position))) this.position++;
+            if (start == this.position) throw error(this.position < this.text.length() ? "unexpected " + this.text.charAt(this.position) : "missing object name");
+            return this.text.substring(start, this.position);
+        }
+
+        private int number() {
+            int start = this.position;
+            while (this.position < this.text.length() && Character.isDigit(this.text.charAt(this.position))) this.position++;
+            if (start == this.position) throw error("missing number");
+            return Integer.parseInt(this.text.substring(start, this.position));
+        }
+
+        private boolean accept(char c) {
+            if (this.position < this.text.length() && this.text.charAt(this.position) == c) {
+                this.position++;
+                return true;
+            }
+            return false;
+        }
+
+        IllegalArgumentException error(String problem) {
+            return new IllegalArgumentException("Bad passage condition \"" + this.text + "\" at " + this.position + ": " + problem);
+        }
+    }
+
+    /**
+     * The player carries an object.
+     */
+    private static final class Carrying extends PassageCondition {
+        private final SymbolTable symbols; //the symbols the name is an id of
+        private final int symbol; //symbol id of the object name
+
+        Carrying(SymbolTable symbols, int symbol) {
+            this.symbols = symbols;
+            this.symbol = symbol;
+        }
+
+        @Override
+        boolean test(AdventureGame game) {
+            return game.getPlayer().carries(this.symbols, this.symbol);
+        }
+
+        @Override
+        public String toString() {
+            return this.symbols.name(this.symbol);
+        }
+    }
+
+    /**
+     * The player has been in a room and left it.
+     */
+    private static final class Visited extends PassageCondition {
+        private final int roomNumber;
+
+        Visited(int roomNumber) {
+            this.roomNumber = roomNumber;
+        }
+
+        @Override
+        boolean test(AdventureGame game) {
+            return game.hasVisited(this.roomNumber);
+        }
+
+        @Override
+        public String toString() {
+            return "@" + this.roomNumber;
+        }
+    }
+
+    /**
+     * The time left on the game timer compares to a number of seconds.
+     */
+    private static final class TimeLeft extends PassageCondition {
+        static final int LESS = 0, AT_MOST = 1, EQUAL = 2, AT_LEAST = 3, MORE = 4;
+        private static final String[] SYMBOLS = {"<", "<=", "=", ">=", ">"};
+
+        private final int comparison; //one of the constants above
+        private final int seconds;
+
+        TimeLeft(int comparison, int seconds) {
+            this.comparison = comparison;
+            this.seconds = seconds;
+        }
+
+        @Override
+        boolean test(AdventureGame game) {
+            GameTimer timer = game.getGameTimer();
+            if (timer == null) return false; //a game without a timer has no time to compare
+            int left = timer.getRemainingTime();
+            switch (this.comparison) {
+                case LESS: return left < this.seconds;
+                case AT_MOST: return left <= this.seconds;
+                case EQUAL: return left == this.seconds;
+                case AT_LEAST: return left >= this.seconds;
+                default: return left > this.seconds;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "TIME" + SYMBOLS[this.comparison] + this.seconds;
+        }
+    }
+
+    /**
+     * The inner condition does not hold.
+     */
+    private static final class Not extends PassageCondition {
+        private final PassageCondition inner;
+
+        Not(PassageCondition inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        boolean test(AdventureGame game) {
+            return !this.inner.test(game);
+        }
+
+        @Override
+        public String toString() {
+            return "!" + group(this.inner);
+        }
+    }
+
+    /**
+     * Every part holds; stops at the first that does not.
+     */
+    private static final class All extends PassageCondition {
+        private final PassageCondition[] parts;
+
+        All(PassageCondition[] parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        boolean test(AdventureGame game) {
+            for (PassageCondition part : this.parts) {
+                if (!part.test(game)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (PassageCondition part : this.parts) {
+                if (text.length() > 0) text.append('&');
+                text.append(part instanceof Any ? group(part) : part.toString());
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Some part holds; stops at the first that does.
+     */
+    private static final class Any extends PassageCondition {
+        private final PassageCondition[] parts;
+
+        Any(PassageCondition[] parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        boolean test(AdventureGame game) {
+            for (PassageCondition part : this.parts) {
+                if (part.test(game)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (PassageCondition part : this.parts) {
+                if (text.length() > 0) text.append('|');
+                text.append(part.toString());
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * @return the text of a condition, in parentheses if it has more than one part
+     */
+    private static String group(PassageCondition condition) {
+        return condition instanceof All || condition instanceof Any ? "(" + condition + ")" : condition.toString();
+    }
+}
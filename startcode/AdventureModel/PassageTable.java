@@ -5,15 +5,27 @@ import java.util.*;
 
 /**
  * The PassageTable class keeps track of all the exits or locations
- * a player can go from a room.
+ * a player can go from a room. While a world loads, the table holds its
+ * own Passage objects; once the world is in, it is a view over the
+ * room's passages in the WorldGraph of the world.
  */
 public class PassageTable implements Serializable {
 
     /**
-     * A list of all the Passages that exists from a room.
+     * A list of all the Passages that exists from a room, while its world loads.
      */
     public List<Passage> passageTable;
 
+    /**
+     * The graph of the world the room belongs to, once it is loaded.
+     */
+    private transient WorldGraph graph;
+
+    /**
+     * The id of the room in the graph.
+     */
+    private int roomId;
+
     /**
      * PassageTable constructor
      */
@@ -21,6 +33,17 @@ public class PassageTable implements Serializable {
         this.passageTable = new ArrayList<>();
     }
 
+    /**
+     * PassageTable constructor for the view of a room of a loaded world.
+     *
+     * @param graph the graph of the world
+     * @param roomId the id of the room in the graph
+     */
+    PassageTable(WorldGraph graph, int roomId) {
+        this.graph = graph;
+        this.roomId = roomId;
+    }
+
     /**
      * This method adds an exit or passage
      * to the table.
@@ -38,13 +61,28 @@ public class PassageTable implements Serializable {
      *
      * @return this.passageTable
      */
-    public List<Passage> getDirection(){ return this.passageTable; }
+    public List<Passage> getDirection(){
+        if (this.graph != null) return this.graph.passages(this.roomId);
+        return this.passageTable == null ? List.of() : this.passageTable;
+    }
+
+    /**
+     * Comma delimited list of the directions of the table, in order.
+     *
+     * @return the directions, e.g. "DOWN, UP, NORTH, SOUTH"
+     */
+    String getCommands() {
+        if (this.graph != null) return this.graph.commands(this.roomId);
+        StringJoiner commands = new StringJoiner(", ");
+        for (Passage passage : getDirection()) commands.add(passage.getDirection());
+        return commands.toString();
+    }
 
     /**
      * Pretty print the table.
      */
     public void printTable(){
-        for (Passage m: this.passageTable) {
+        for (Passage m: getDirection()) {
             m.printPassage();
         }
     }
@@ -56,7 +94,11 @@ public class PassageTable implements Serializable {
      * @return true if option exists in MotionTable, else false
      */
     public boolean optionExists(String direction) {
-        for (Passage m : this.passageTable) {
+        if (this.graph != null) {
+            int directionId = this.graph.getSymbols().idOf(direction);
+            return directionId >= 0 && this.graph.hasDirection(this.roomId, directionId);
+        }
+        for (Passage m : getDirection()) {
             if (m.getDirection().equals(direction)) return true;
         }
         return false;
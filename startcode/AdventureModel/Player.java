@@ -1,7 +1,8 @@
 package AdventureModel;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 
 /**
  * This class keeps track of the progress
@@ -14,15 +15,25 @@ public class Player implements Serializable {
     private Room currentRoom;
 
     /**
-     * The list of items that the player is carrying at the moment.
+     * The items that the player is carrying at the moment, indexed by name.
      */
-    public ArrayList<AdventureObject> inventory;
+    private final ObjectIndex inventory;
+
+    /**
+     * The symbols of the world that carried refers to.
+     */
+    private transient SymbolTable symbols;
+
+    /**
+     * The names of the items that the player is carrying, as a bit per symbol id of the world.
+     */
+    private transient BitSet carried;
 
     /**
      * Adventure Game Player Constructor
      */
     public Player(Room currentRoom) {
-        this.inventory = new ArrayList<AdventureObject>();
+        this.inventory = new ObjectIndex();
         this.currentRoom = currentRoom;
     }
 
@@ -35,14 +46,11 @@ public class Player implements Serializable {
      * @return true if picked up, false otherwise
      */
     public boolean takeObject(String object){
-        if(this.currentRoom.checkIfObjectInRoom(object)){
-            AdventureObject object1 = this.currentRoom.getObject(object);
-            this.currentRoom.removeGameObject(object1);
-            this.addToInventory(object1);
-            return true;
-        } else {
-            return false;
-        }
+        AdventureObject object1 = this.currentRoom.getObject(object);
+        if (object1 == null) return false;
+        this.currentRoom.removeGameObject(object1);
+        this.addToInventory(object1);
+        return true;
     }
 
 
@@ -55,25 +63,23 @@ public class Player implements Serializable {
      * @return true if object is in inventory, false otherwise
      */
     public boolean checkIfObjectInInventory(String s) {
-        for(int i = 0; i<this.inventory.size();i++){
-            if(this.inventory.get(i).getName().equals(s)) return true;
-        }
-        return false;
+        return this.inventory.contains(s);
     }
 
 
     /**
      * This method drops an object in the players inventory and adds it to the room.
-     * If the object is not in the inventory, the method does nothing.
+     * If the player carries several objects of that name, the one picked up first
+     * is dropped. If the object is not in the inventory, the method does nothing.
      *
      * @param s name of the object to drop
      */
     public void dropObject(String s) {
-        for(int i = 0; i<this.inventory.size();i++){
-            if(this.inventory.get(i).getName().equals(s)) {
-                this.currentRoom.addGameObject(this.inventory.get(i));
-                this.inventory.remove(i);
-            }
+        AdventureObject object = this.inventory.get(s);
+        if (object != null) {
+            this.inventory.remove(object);
+            if (this.symbols != null && !this.inventory.contains(s)) clearCarried(s);
+            this.currentRoom.addGameObject(object);
         }
     }
 
@@ -93,6 +99,7 @@ public class Player implements Serializable {
      */
     public void addToInventory(AdventureObject object) {
         this.inventory.add(object);
+        if (this.symbols != null) setCarried(object.getName());
     }
 
 
@@ -105,16 +112,56 @@ public class Player implements Serializable {
         return this.currentRoom;
     }
 
+    /**
+     * Checks if the player carries an object whose name has a given symbol id,
+     * e.g. the key of a passage. This is a single bit test.
+     *
+     * @param symbols the symbols of the player's world
+     * @param symbol the symbol id of the name
+     * @return true if the player carries an object of that name
+     */
+    boolean carries(SymbolTable symbols, int symbol) {
+        if (symbols != this.symbols) useSymbols(symbols);
+        return this.carried.get(symbol);
+    }
+
+    /**
+     * Rebuilds the bits of the inventory for the symbols of a world, after the
+     * player starts, is loaded from a save, or their world is reloaded.
+     *
+     * @param symbols the symbols of the player's world
+     */
+    private void useSymbols(SymbolTable symbols) {
+        this.symbols = symbols;
+        this.carried = new BitSet(symbols.size());
+        for (AdventureObject object : this.inventory) setCarried(object.getName());
+    }
+
+    private void setCarried(String name) {
+        int symbol = this.symbols.idOf(name);
+        if (symbol >= 0) this.carried.set(symbol); //a name the world does not use can not be a key
+    }
+
+    private void clearCarried(String name) {
+        int symbol = this.symbols.idOf(name);
+        if (symbol >= 0) this.carried.clear(symbol);
+    }
+
     /**
      * Getter method for string representation of inventory.
      *
-     * @return ArrayList of names of items that the player has.
+     * @return read-only live view of the names of items that the player has.
      */
-    public ArrayList<String> getInventory() {
-        ArrayList<String> objects = new ArrayList<>();
-        for(int i=0;i<this.inventory.size();i++){
-            objects.add(this.inventory.get(i).getName());
-        }
-        return objects;
+    public Collection<String> getInventory() {
+        return this.inventory.names();
+    }
+
+    /**
+     * Getter method for the items of the inventory.
+     *
+     * @return read-only live view of the items that the player has, in the order picked up.
+     */
+    public Collection<AdventureObject> getInventoryObjects() {
+        return this.inventory.objects();
     }
 }
@@ -1,7 +1,8 @@
 package AdventureModel;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.StringJoiner;
 
 /**
  * This class contains the information about a 
@@ -31,9 +32,15 @@ public class Room implements Serializable {
     private PassageTable motionTable = new PassageTable();
 
     /**
-     * The list of objects in the room.
+     * The objects in the room, in the order they were placed there, indexed by name.
      */
-    public ArrayList<AdventureObject> objectsInRoom = new ArrayList<AdventureObject>();
+    private ObjectIndex objectsInRoom = new ObjectIndex();
+
+    /**
+     * A boolean to store if objectsInRoom still belongs to the world template
+     * this room was made from, and must be copied before it is changed
+     */
+    private boolean sharedObjects;
 
     /**
      * A boolean to store if the room has been visited or not
@@ -55,6 +62,24 @@ public class Room implements Serializable {
         this.isVisited = false;
     }
 
+    /**
+     * Room constructor for a game's own copy of a room of a shared WorldTemplate.
+     * The copy shares the name, description, passages and starting objects of
+     * the template room; its objects are only copied once they change.
+     *
+     * @param template the room of the world template
+     */
+    Room(Room template){
+        this.roomName = template.roomName;
+        this.roomNumber = template.roomNumber;
+        this.roomDescription = template.roomDescription;
+        this.adventureName = template.adventureName;
+        this.motionTable = template.motionTable;
+        this.objectsInRoom = template.objectsInRoom;
+        this.sharedObjects = true;
+        this.isVisited = false;
+    }
+
 
     /**
      * Returns a comma delimited list of every
@@ -64,11 +89,11 @@ public class Room implements Serializable {
      * @return delimited string of object descriptions
      */
     public String getObjectString() {
-        ArrayList<String> objStr = new ArrayList<>();
+        StringJoiner objStr = new StringJoiner(", ");
         for (AdventureObject obj : this.objectsInRoom) {
             objStr.add(obj.getDescription());
         }
-        return String.join(", ", objStr);
+        return objStr.toString();
     }
 
     /**
@@ -79,11 +104,7 @@ public class Room implements Serializable {
      * @return delimited string of possible moves
      */
     public String getCommands() {
-        ArrayList<String> comStr = new ArrayList<>();
-        for (Passage passage : this.motionTable.getDirection()) {
-            comStr.add(passage.getDirection());
-        }
-        return String.join(", ", comStr);
+        return this.motionTable.getCommands();
     }
 
     /**
@@ -92,7 +113,7 @@ public class Room implements Serializable {
      * @param object to be added to the room.
      */
     public void addGameObject(AdventureObject object){
-        this.objectsInRoom.add(object);
+        ownObjects().add(object);
     }
 
     /**
@@ -101,7 +122,29 @@ public class Room implements Serializable {
      * @param object to be removed from the room.
      */
     public void removeGameObject(AdventureObject object){
-        this.objectsInRoom.remove(object);
+        ownObjects().remove(object);
+    }
+
+    /**
+     * Copies the objects shared with the world template, if they still are.
+     *
+     * @return the objects of this room only
+     */
+    private ObjectIndex ownObjects(){
+        if (this.sharedObjects) {
+            this.objectsInRoom = new ObjectIndex(this.objectsInRoom);
+            this.sharedObjects = false;
+        }
+        return this.objectsInRoom;
+    }
+
+    /**
+     * Getter method for the objects in the room.
+     *
+     * @return read-only live view of the objects in the room, in the order they were placed there
+     */
+    public Collection<AdventureObject> getObjects(){
+        return this.objectsInRoom.objects();
     }
 
     /**
@@ -111,10 +154,7 @@ public class Room implements Serializable {
      * @return true if the object is present in the room, false otherwise.
      */
     public boolean checkIfObjectInRoom(String objectName){
-        for(int i = 0; i<objectsInRoom.size();i++){
-            if(this.objectsInRoom.get(i).getName().equals(objectName)) return true;
-        }
-        return false;
+        return this.objectsInRoom.contains(objectName);
     }
 
     /**
@@ -127,14 +167,36 @@ public class Room implements Serializable {
     /**
      * Getter for returning an AdventureObject with a given name
      *
+     * If several objects share the name, the one placed in the room first is returned.
+     *
      * @param objectName: Object name to find in the room
-     * @return: AdventureObject
+     * @return: AdventureObject, or null if there is none
      */
     public AdventureObject getObject(String objectName){
-        for(int i = 0; i<objectsInRoom.size();i++){
-            if(this.objectsInRoom.get(i).getName().equals(objectName)) return this.objectsInRoom.get(i);
-        }
-        return null;
+        return this.objectsInRoom.get(objectName);
+    }
+
+    /**
+     * Replaces the name, description and passages of the room with those of a
+     * newer version of its template room, keeping its visit status. Objects
+     * are only taken from the template if the room never had its own.
+     *
+     * @param newer the new template room
+     */
+    void updateFrom(Room newer){
+        this.roomName = newer.roomName;
+        this.roomDescription = newer.roomDescription;
+        this.motionTable = newer.motionTable;
+        if (this.sharedObjects) this.objectsInRoom = newer.objectsInRoom;
+    }
+
+    /**
+     * Checks if the objects of the room have changed since it was copied from its template.
+     *
+     * @return true if the room has its own objects
+     */
+    boolean hasOwnObjects(){
+        return !this.sharedObjects;
     }
 
     /**
@@ -155,6 +217,15 @@ public class Room implements Serializable {
         return this.roomDescription.replace("\n", " ");
     }
 
+    /**
+     * Getter method for the description attribute, as it appears in the game files.
+     *
+     * @return: description of the room, line breaks included
+     */
+    String getRawDescription(){
+        return this.roomDescription;
+    }
+
 
     /**
      * Getter method for the name attribute.
@@ -176,6 +247,16 @@ public class Room implements Serializable {
     }
 
 
+    /**
+     * Makes the passage table of the room a view over the graph of its world.
+     *
+     * @param graph the graph of the world
+     */
+    void useGraph(WorldGraph graph){
+        this.motionTable = new PassageTable(graph, graph.roomId(this.roomNumber));
+    }
+
+
     /**
      * Getter method for the motionTable attribute.
      *
@@ -0,0 +1,202 @@
+package AdventureModel;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SessionRooms
+ * __________________________
+ * The rooms of one game. The game gets its own copy of a template room the
+ * first time it uses it; the copy shares the name, description, passages and
+ * starting objects of the template room and only holds what the player
+ * changes: the objects in the room once they differ, and whether the room
+ * was visited. Rooms the game never used cost it nothing.
+ *
+ * The copies are kept in a small open-addressing table keyed by room number,
+ * so looking up a room while moving does not box the number.
+ */
+class SessionRooms extends AbstractMap<Integer, Room> implements Serializable {
+
+    private WorldTemplate template; //the world the game is played in
+    private Room[] used = new Room[8]; //the game's copies of the rooms it used, hashed by room number; a power of two long
+    private int usedCount; //number of rooms in used
+
+    /**
+     * SessionRooms Constructor
+     * __________________________
+     *
+     * @param template the world the game is played in
+     */
+    SessionRooms(WorldTemplate template) {
+        this.template = template;
+    }
+
+    @Override
+    public Room get(Object key) {
+        return key instanceof Integer ? room((Integer) key) : null;
+    }
+
+    /**
+     * room
+     * __________________________
+     * Get the game's copy of a room, copying it from the template on first use.
+     *
+     * @param roomNumber the room number
+     * @return the room, or null if there is no such room
+     */
+    Room room(int roomNumber) {
+        int slot = slot(roomNumber);
+        if (this.used[slot] != null) return this.used[slot];
+        Room templateRoom = this.template.getRooms().get(roomNumber);
+        if (templateRoom == null) return null;
+        Room room = new Room(templateRoom);
+        this.used[slot] = room;
+        if (++this.usedCount * 2 > this.used.length) rehash(this.used.length * 2);
+        return room;
+    }
+
+    /**
+     * isVisited
+     * __________________________
+     * Check if a room was visited, without copying it if the game never used it.
+     *
+     * @param roomNumber the room number
+     * @return true if the game's copy of the room was visited
+     */
+    boolean isVisited(int roomNumber) {
+        Room room = this.used[slot(roomNumber)];
+        return room != null && room.getVisited();
+    }
+
+    /**
+     * @return the slot of used that holds a room number, or the empty slot where it belongs
+     */
+    private int slot(int roomNumber) {
+        int mask = this.used.length - 1;
+        int hash = roomNumber * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (this.used[slot] != null && this.used[slot].getRoomNumber() != roomNumber) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Move the rooms into a table of a new size, dropping those that are null.
+     */
+    private void rehash(int length) {
+        Room[] rooms = this.used;
+        this.used = new Room[length];
+        this.usedCount = 0;
+        for (Room room : rooms) {
+            if (room == null) continue;
+            this.used[slot(room.getRoomNumber())] = room;
+            this.usedCount++;
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.template.getRooms().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return entrySet().size();
+    }
+
+    /**
+     * usedRooms
+     * __________________________
+     * @return the game's own copies of the rooms it used so far
+     */
+    Collection<Room> usedRooms() {
+        List<Room> rooms = new ArrayList<>(this.usedCount);
+        for (Room room : this.used) {
+            if (room != null) rooms.add(room);
+        }
+        return rooms;
+    }
+
+    /**
+     * rebase
+     * __________________________
+     * Move the game onto a new version of its world. Each room the game used
+     * takes the name, description and passages of its new version; rooms that
+     * are gone from the world are dropped, except the one the player stands in.
+     *
+     * @param newer the new version of the world
+     * @param currentRoom the room the player is in
+     */
+    void rebase(WorldTemplate newer, Room currentRoom) {
+        this.template = newer;
+        boolean removed = false;
+        for (int slot = 0; slot < this.used.length; slot++) {
+            Room room = this.used[slot];
+            if (room == null) continue;
+            Room templateRoom = newer.getRooms().get(room.getRoomNumber());
+            if (templateRoom != null) room.updateFrom(templateRoom);
+            else if (room != currentRoom) { //never pull the floor out from under the player
+                this.used[slot] = null;
+                removed = true;
+            }
+        }
+        if (removed) rehash(this.used.length);
+    }
+
+    /**
+     * Every room of the world, in the order of the template. Rooms the game
+     * did not use yet are copied as they are reached.
+     */
+    @Override
+    public Set<Map.Entry<Integer, Room>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<Integer, Room>> iterator() {
+                Iterator<Integer> roomNumbers = template.getRooms().keySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return roomNumbers.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<Integer, Room> next() {
+                        Integer roomNumber = roomNumbers.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(roomNumber, get(roomNumber));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return template.getRooms().size();
+            }
+        };
+    }
+
+    /**
+     * readObject
+     * Deserializing the rooms of a saved game; the rooms share the static
+     * parts of the running template again instead of holding saved copies.
+     *
+     * @param ois The ObjectInputStream used for deserialization.
+     * @throws ClassNotFoundException If the class of a serialized object cannot be found.
+     * @throws IOException            If an I/O error occurs during deserialization.
+     */
+    private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
+        ois.defaultReadObject();
+        for (Room room : this.used) {
+            if (room == null) continue;
+            Room templateRoom = this.template.getRooms().get(room.getRoomNumber());
+            if (templateRoom != null) room.updateFrom(templateRoom);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package AdventureModel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SymbolTable
+ * __________________________
+ * Gives each distinct string of a world, such as a direction, a verb or the
+ * name of an object, a small int id, so the world can be stored and compared
+ * as numbers. Ids are dense and start at 0. A world keeps one copy of each
+ * string, the one in its table. A table is filled while its world loads and
+ * only read afterwards, by any number of games at once; it is not safe to
+ * add to a table that games may be reading, so a world that adds strings
+ * to a table already in use adds them to a copy (see copy).
+ */
+public class SymbolTable {
+
+    private final Map<String, Integer> ids = new HashMap<>(); //id of each string
+    private final List<String> names = new ArrayList<>(); //string of each id
+
+    /**
+     * intern
+     * __________________________
+     * Get the id of a string, giving it the next free id if it has none yet.
+     *
+     * @param name the string
+     * @return the id of the string
+     */
+    int intern(String name) {
+        Integer id = this.ids.get(name);
+        if (id == null) {
+            id = this.names.size();
+            this.names.add(name);
+            this.ids.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * copy
+     * __________________________
+     * @return a new table holding the same strings with the same ids
+     */
+    SymbolTable copy() {
+        SymbolTable copy = new SymbolTable();
+        for (String name : this.names) copy.intern(name);
+        return copy;
+    }
+
+    /**
+     * idOf
+     * __________________________
+     * @param name the string
+     * @return the id of the string, or -1 if the world does not use it
+     */
+    public int idOf(String name) {
+        Integer id = this.ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * name
+     * __________________________
+     * @param id the id of a string
+     * @return the string
+     */
+    public String name(int id) {
+        return this.names.get(id);
+    }
+
+    /**
+     * size
+     * __________________________
+     * @return the number of strings in the table
+     */
+    public int size() {
+        return this.names.size();
+    }
+}
@@ -0,0 +1,26 @@
+package AdventureModel;
+
+/**
+ * The TimerListener interface is told when the time on a GameTimer moves on
+ * (see GameTimer.addListener). Listeners are called on the timer thread shared
+ * by all games, so they must be quick, and hand any work on a UI over to its
+ * own thread.
+ */
+public interface TimerListener {
+
+    /**
+     * Called each time the running timer passes a multiple of the granularity
+     * the listener was added with.
+     *
+     * @param timer The GameTimer whose time moved on.
+     */
+    void tick(GameTimer timer);
+
+    /**
+     * Called once when the timer runs out of time, after its last tick.
+     *
+     * @param timer The GameTimer that ran out.
+     */
+    default void expired(GameTimer timer) {
+    }
+}
@@ -0,0 +1,298 @@
+package AdventureModel;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TimingWheel
+ * __________________________
+ * A hashed timing wheel: one thread that runs timed tasks for any number of
+ * games (see GameTimer). Time is cut into ticks, and a task waits in the
+ * slot of the wheel its deadline falls in, with the number of turns of the
+ * wheel left before it is due; so scheduling, cancelling and running a task
+ * take constant time however many tasks are waiting, and the games never
+ * cost more than the one thread.
+ *
+ * Tasks are handed to the wheel thread through queues, so only that thread
+ * touches the slots. Tasks run on the wheel thread and must be short. While
+ * no task is waiting the thread sleeps until one is scheduled, rather than
+ * waking on every tick.
+ *
+ * The shared wheel is the system GameClock.
+ */
+public final class TimingWheel implements GameClock {
+
+    private static final TimingWheel SHARED = new TimingWheel(TimeUnit.MILLISECONDS.toNanos(10), 256, "adventure-timer");
+
+    private final long tickNanos; //length of a tick
+    private final Slot[] slots; //the wheel; its length is a power of two
+    private final int mask; //slots.length - 1
+    private final String threadName; //name of the wheel thread
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>(); //tasks scheduled since the last tick
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>(); //tasks cancelled since the last tick
+    private final AtomicInteger pending = new AtomicInteger(); //tasks scheduled and not yet done or cancelled
+
+    private volatile Thread thread; //the wheel thread, started by the first task
+    private volatile boolean idle; //true while the wheel thread sleeps for want of tasks
+    private long startTime; //System.nanoTime() when the wheel thread started
+    private long tick; //ticks done since the wheel thread started
+
+    /**
+     * TimingWheel Constructor
+     * __________________________
+     *
+     * @param tickNanos length of a tick
+     * @param size number of slots, rounded up to a power of two
+     * @param threadName name of the wheel thread
+     */
+    public TimingWheel(long tickNanos, int size, String threadName) {
+        int length = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        this.tickNanos = tickNanos;
+        this.slots = new Slot[length];
+        for (int i = 0; i < length; i++) this.slots[i] = new Slot();
+        this.mask = length - 1;
+        this.threadName = threadName;
+    }
+
+    /**
+     * shared
+     * __________________________
+     * @return the wheel every game timer runs on
+     */
+    static TimingWheel shared() {
+        return SHARED;
+    }
+
+    /**
+     * schedule
+     * __________________________
+     * Run a task after a delay, and then again every period until it is
+     * cancelled. Tasks are run on a tick, so up to one tick late.
+     *
+     * @param task the task
+     * @param delay time until the task first runs
+     * @param period time between runs, or 0 to run once
+     * @param unit the unit of delay and period
+     * @return the scheduled task, to cancel it
+     */
+    public Timeout schedule(Runnable task, long delay, long period, TimeUnit unit) {
+        startThread();
+        Timeout timeout = new Timeout(this, task, System.nanoTime() - this.startTime + unit.toNanos(delay), unit.toNanos(period));
+        this.pending.incrementAndGet();
+        this.added.add(timeout);
+        if (this.idle) LockSupport.unpark(this.thread);
+        return timeout;
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return schedule(task, delay, 0, unit);
+    }
+
+    /**
+     * pending
+     * __________________________
+     * @return the number of tasks waiting to run
+     */
+    public int pending() {
+        return this.pending.get();
+    }
+
+    private void startThread() {
+        if (this.thread != null) return;
+        synchronized (this) {
+            if (this.thread != null) return;
+            this.startTime = System.nanoTime();
+            Thread thread = new Thread(this::run, this.threadName);
+            thread.setDaemon(true);
+            thread.start();
+            this.thread = thread;
+        }
+    }
+
+    /*
+     * Turn the wheel: on every tick take in the tasks scheduled and
+     * cancelled since the last, then run the tasks due in the current slot.
+     * Once no task is waiting, sleep until one is scheduled.
+     */
+    private void run() {
+        while (true) {
+            long deadline = (this.tick + 1) * this.tickNanos;
+            long now;
+            while ((now = System.nanoTime() - this.startTime) < deadline) LockSupport.parkNanos(deadline - now);
+
+            Timeout timeout;
+            while ((timeout = this.cancelled.poll()) != null) {
+                if (timeout.slot != null) timeout.slot.remove(timeout);
+            }
+            while ((timeout = this.added.poll()) != null) {
+                if (timeout.state.get() == Timeout.WAITING) place(timeout, this.tick);
+            }
+            this.slots[(int) (this.tick & this.mask)].expire();
+            this.tick++;
+
+            if (this.pending.get() == 0) sleep();
+        }
+    }
+
+    /*
+     * Park until a task is scheduled, then catch up with the ticks slept
+     * through. Any task left in a slot is cancelled or done, so no slot
+     * needs expiring on the way. schedule() counts a task as pending before
+     * it looks at idle, and this thread sets idle before it looks at
+     * pending, so one of them always sees the other.
+     */
+    private void sleep() {
+        this.idle = true;
+        while (this.pending.get() == 0) LockSupport.park(this);
+        this.idle = false;
+        this.tick = Math.max(this.tick, (System.nanoTime() - this.startTime) / this.tickNanos);
+    }
+
+    /*
+     * Put a task in the slot its deadline falls in; one already overdue
+     * goes in the earliest slot it may still run in. Turns of the wheel are
+     * counted from the first tick whose slot is still to be expired.
+     *
+     * @param earliest the first tick whose slot is still to be expired
+     */
+    private void place(Timeout timeout, long earliest) {
+        long due = Math.max(timeout.deadline / this.tickNanos, earliest);
+        timeout.rounds = (due - earliest) / this.slots.length;
+        this.slots[(int) (due & this.mask)].add(timeout);
+    }
+
+    /**
+     * Timeout
+     * __________________________
+     * A task waiting on the wheel.
+     */
+    public static final class Timeout implements GameClock.Timeout {
+
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int DONE = 2;
+
+        private final TimingWheel wheel; //the wheel the task waits on
+        private final Runnable task; //what to run
+        private final long period; //nanoseconds between runs, or 0 to run once
+        private final AtomicInteger state = new AtomicInteger(WAITING); //WAITING, CANCELLED or DONE
+        private long deadline; //nanoseconds after the wheel started that the task is due
+        private long rounds; //turns of the wheel left before the task is due
+        private Slot slot; //the slot the task is in, or null
+        private Timeout previous; //in the slot
+        private Timeout next; //in the slot
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadline, long period) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        /**
+         * cancel
+         * __________________________
+         * Stop the task from running again. A task can cancel itself.
+         *
+         * @return true if the task was waiting, false if it was done or cancelled already
+         */
+        @Override
+        public boolean cancel() {
+            if (!this.state.compareAndSet(WAITING, CANCELLED)) return false;
+            this.wheel.pending.decrementAndGet();
+            this.wheel.cancelled.add(this);
+            return true;
+        }
+    }
+
+    /*
+     * A slot of the wheel: a doubly linked list of the tasks in it.
+     */
+    private final class Slot {
+        private Timeout head; //first task in the slot
+        private Timeout tail; //last task in the slot
+
+        void add(Timeout timeout) {
+            timeout.slot = this;
+            timeout.previous = this.tail;
+            timeout.next = null;
+            if (this.tail == null) this.head = timeout;
+            else this.tail.next = timeout;
+            this.tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous == null) this.head = timeout.next;
+            else timeout.previous.next = timeout.next;
+            if (timeout.next == null) this.tail = timeout.previous;
+            else timeout.next.previous = timeout.previous;
+            timeout.slot = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+
+        /*
+         * Run the tasks in the slot that are due, then put the periodic ones
+         * back from the next tick on, so one that is overdue runs on the
+         * next tick rather than a turn of the wheel later. A task cancelled
+         * since the last tick, e.g. by a task that ran before it in this
+         * slot, is dropped without running.
+         */
+        void expire() {
+            Timeout again = null; //periodic tasks that ran, linked through next
+            Timeout timeout = this.head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.state.get() != Timeout.WAITING) {
+                    remove(timeout);
+                } else if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                } else if (timeout.period > 0) {
+                    remove(timeout);
+                    runTask(timeout);
+                    timeout.next = again;
+                    again = timeout;
+                } else {
+                    remove(timeout);
+                    if (timeout.state.compareAndSet(Timeout.WAITING, Timeout.DONE)) { //unless it was cancelled just now
+                        pending.decrementAndGet();
+                        runTask(timeout);
+                    }
+                }
+                timeout = next;
+            }
+            while (again != null) {
+                Timeout next = again.next;
+                again.next = null;
+                again.deadline += again.period;
+                if (again.state.get() == Timeout.WAITING) place(again, tick + 1); //unless it cancelled itself
+                again = next;
+            }
+        }
+
+        /*
+         * Run a task, keeping the wheel turning whatever it throws: the
+         * wheel runs the timers of every game, so one failing task must not
+         * stop the others. Only errors the JVM cannot recover from get out.
+         */
+        private void runTask(Timeout timeout) {
+            try {
+                timeout.task.run();
+            } catch (VirtualMachineError e) {
+                throw e;
+            } catch (Throwable e) {
+                System.err.println("A timed task failed on " + threadName + ": " + e);
+                e.printStackTrace();
+            }
+        }
+    }
+}
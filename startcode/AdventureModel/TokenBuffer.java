@@ -0,0 +1,92 @@
+package AdventureModel;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * TokenBuffer
+ * __________________________
+ * The words of one command, as filled in by Vocabulary.tokenize. A game
+ * reuses one buffer for every command, so tokenizing does not allocate once
+ * the buffer is large enough. Each word has its token id and its place in
+ * the command text; the text of a word is only copied out when asked for.
+ */
+public final class TokenBuffer {
+
+    private CharSequence input; //the command the words are from
+    private Vocabulary vocabulary; //the vocabulary that made the tokens
+    private int count; //number of words
+    private int[] ids = new int[4]; //token id of each word, or Vocabulary.UNKNOWN
+    private int[] starts = new int[4]; //offset of each word in input
+    private int[] ends = new int[4]; //offset just past each word in input
+
+    /**
+     * Forget the words of the last command.
+     */
+    void clear(CharSequence input, Vocabulary vocabulary) {
+        this.input = input;
+        this.vocabulary = vocabulary;
+        this.count = 0;
+    }
+
+    /**
+     * Add a word of the command.
+     */
+    void add(int id, int start, int end) {
+        if (this.count == this.ids.length) {
+            this.ids = Arrays.copyOf(this.ids, this.count * 2);
+            this.starts = Arrays.copyOf(this.starts, this.count * 2);
+            this.ends = Arrays.copyOf(this.ends, this.count * 2);
+        }
+        this.ids[this.count] = id;
+        this.starts[this.count] = start;
+        this.ends[this.count] = end;
+        this.count++;
+    }
+
+    /**
+     * size
+     * __________________________
+     * @return the number of words in the command
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * id
+     * __________________________
+     * @param index the position of a word
+     * @return the token id of the word, or Vocabulary.UNKNOWN
+     */
+    public int id(int index) {
+        if (index >= this.count) throw new IndexOutOfBoundsException(index);
+        return this.ids[index];
+    }
+
+    /**
+     * word
+     * __________________________
+     * The word at a position, with synonyms replaced by the word they stand
+     * for. Only words the vocabulary does not know are copied from the command.
+     *
+     * @param index the position of a word
+     * @return the word, upper case
+     */
+    public String word(int index) {
+        int id = id(index);
+        if (id != Vocabulary.UNKNOWN) return this.vocabulary.name(id);
+        return this.input.subSequence(this.starts[index], this.ends[index]).toString().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * words
+     * __________________________
+     * @return every word of the command, as returned by word
+     */
+    public String[] words() {
+        String[] words = new String[this.count];
+        for (int i = 0; i < this.count; i++) words[i] = word(i);
+        return words;
+    }
+}
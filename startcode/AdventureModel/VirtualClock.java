@@ -0,0 +1,111 @@
+package AdventureModel;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VirtualClock
+ * __________________________
+ * A GameClock that only moves when advance is called. Advancing runs every
+ * task that falls due on the way, in the order of their times (tasks due at
+ * the same time in the order they were scheduled), on the thread that
+ * advances the clock, with the clock reading the time each task was due.
+ * So a game on a virtual clock plays its full time limit in an instant, and
+ * plays out the same way every time.
+ */
+public final class VirtualClock implements GameClock {
+
+    private final PriorityQueue<Alarm> alarms = new PriorityQueue<>(); //tasks waiting, soonest first
+    private long now; //the time on the clock, in nanoseconds
+    private long scheduled; //tasks scheduled so far, to order tasks due at the same time
+
+    /**
+     * VirtualClock Constructor
+     * __________________________
+     * A clock that reads 0 until it is advanced.
+     */
+    public VirtualClock() {
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return this.now;
+    }
+
+    @Override
+    public synchronized Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Alarm alarm = new Alarm(task, this.now + Math.max(unit.toNanos(delay), 0), this.scheduled++);
+        this.alarms.add(alarm);
+        return alarm;
+    }
+
+    /**
+     * advance
+     * __________________________
+     * Move the clock on, running the tasks that fall due on the way.
+     *
+     * @param amount how far to move the clock
+     * @param unit the unit of the amount
+     */
+    public void advance(long amount, TimeUnit unit) {
+        long target;
+        synchronized (this) {
+            target = this.now + unit.toNanos(amount);
+        }
+        while (true) {
+            Alarm due;
+            synchronized (this) {
+                due = this.alarms.peek();
+                if (due == null || due.deadline > target) {
+                    this.now = Math.max(this.now, target);
+                    return;
+                }
+                this.alarms.poll();
+                this.now = due.deadline;
+                if (due.done) continue; //cancelled
+                due.done = true;
+            }
+            due.task.run(); //outside the lock, so the task can schedule more
+        }
+    }
+
+    /**
+     * pending
+     * __________________________
+     * @return the number of tasks waiting, including cancelled ones not yet due
+     */
+    public synchronized int pending() {
+        return this.alarms.size();
+    }
+
+    /*
+     * A task waiting on the clock.
+     */
+    private final class Alarm implements Timeout, Comparable<Alarm> {
+        private final Runnable task; //what to run
+        private final long deadline; //when to run it
+        private final long order; //when it was scheduled
+        private boolean done; //true once run or cancelled; guarded by the clock
+
+        Alarm(Runnable task, long deadline, long order) {
+            this.task = task;
+            this.deadline = deadline;
+            this.order = order;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (VirtualClock.this) {
+                if (this.done) return false;
+                this.done = true;
+                return true;
+            }
+        }
+
+        @Override
+        public int compareTo(Alarm other) {
+            int byDeadline = Long.compare(this.deadline, other.deadline);
+            return byDeadline != 0 ? byDeadline : Long.compare(this.order, other.order);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package AdventureModel;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Vocabulary
+ * __________________________
+ * Every word a world understands: its verbs, directions, object names and
+ * synonyms. The vocabulary is compiled once per world and turns commands
+ * into token ids in a single pass, without allocating.
+ *
+ * Words are matched case-insensitively through an open-addressing hash
+ * table. A synonym is resolved when the vocabulary is compiled, following
+ * chains such as GRAB=TAKE, TAKE=GET to the last word, so a synonym's
+ * token id is the id of the word it stands for. Token ids are the ids of
+ * the world's SymbolTable, so a direction token can be looked up in the
+ * WorldGraph directly.
+ */
+public final class Vocabulary {
+
+    /**
+     * Token id of a word the world does not know.
+     */
+    public static final int UNKNOWN = -1;
+
+    private final SymbolTable symbols; //the world's symbols, which token ids refer to
+    private final char[][] words; //every word, upper case
+    private final int[] hashes; //hash of each word
+    private final int[] tokenIds; //token id of each word, after synonyms
+    private final int[] table; //index of a word plus one, by hash; 0 is an empty slot
+
+    /**
+     * Vocabulary Constructor
+     * __________________________
+     * Use compile to make a vocabulary.
+     */
+    private Vocabulary(SymbolTable symbols, char[][] words, int[] tokenIds) {
+        this.symbols = symbols;
+        this.words = words;
+        this.tokenIds = tokenIds;
+        this.hashes = new int[words.length];
+        this.table = new int[Math.max(16, Integer.highestOneBit(Math.max(1, words.length * 2)) * 2)];
+        for (int i = 0; i < words.length; i++) {
+            this.hashes[i] = hash(words[i], 0, words[i].length);
+            int slot = this.hashes[i] & (this.table.length - 1);
+            while (this.table[slot] != 0) slot = (slot + 1) & (this.table.length - 1);
+            this.table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * compile
+     * __________________________
+     * Compile the vocabulary of a world.
+     *
+     * @param symbols the symbols of the world; words it does not have yet are added
+     * @param verbs the verbs every game understands
+     * @param objectNames the names of the objects of the world
+     * @param synonyms synonyms of words, e.g. N=NORTH
+     * @return the vocabulary
+     */
+    static Vocabulary compile(SymbolTable symbols, Iterable<String> verbs, Iterable<String> objectNames, Map<String, String> synonyms) {
+        Map<String, String> upperSynonyms = new HashMap<>();
+        for (Map.Entry<String, String> synonym : synonyms.entrySet()) {
+            upperSynonyms.put(upper(synonym.getKey()), upper(synonym.getValue()));
+        }
+
+        Set<String> known = new LinkedHashSet<>();
+        for (int id = 0; id < symbols.size(); id++) known.add(upper(symbols.name(id)));
+        for (String verb : verbs) known.add(upper(verb));
+        for (String name : objectNames) known.add(upper(name));
+        for (Map.Entry<String, String> synonym : upperSynonyms.entrySet()) {
+            known.add(synonym.getKey());
+            known.add(synonym.getValue());
+        }
+        known.removeIf(word -> word.isEmpty() || hasWhitespace(word)); //can never be typed as one token
+
+        char[][] words = new char[known.size()][];
+        int[] tokenIds = new int[known.size()];
+        int i = 0;
+        for (String word : known) {
+            words[i] = word.toCharArray();
+            tokenIds[i] = symbols.intern(resolve(word, upperSynonyms));
+            i++;
+        }
+        return new Vocabulary(symbols, words, tokenIds);
+    }
+
+    /**
+     * Follow a chain of synonyms to the word it ends at. A chain that loops
+     * ends at the last word before it would repeat.
+     */
+    private static String resolve(String word, Map<String, String> synonyms) {
+        Set<String> seen = new HashSet<>();
+        seen.add(word);
+        String next = synonyms.get(word);
+        while (next != null && seen.add(next)) {
+            word = next;
+            next = synonyms.get(word);
+        }
+        return word;
+    }
+
+    private static String upper(String word) {
+        return word.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean hasWhitespace(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.isWhitespace(word.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the hash of part of a word, ignoring case
+     */
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = hash * 31 + Character.toUpperCase(text.charAt(i));
+        return mix(hash);
+    }
+
+    private static int hash(char[] word, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = hash * 31 + word[i];
+        return mix(hash);
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * tokenize
+     * __________________________
+     * Split a command into words, in one pass over the text. Any run of
+     * whitespace separates words.
+     *
+     * @param input the command
+     * @param tokens buffer to fill; its previous contents are replaced
+     */
+    public void tokenize(CharSequence input, TokenBuffer tokens) {
+        tokenize(input, 0, input.length(), tokens);
+    }
+
+    /**
+     * tokenize
+     * __________________________
+     * Split part of a text into words, e.g. one command of a script, without
+     * copying it out first.
+     *
+     * @param input the text
+     * @param start the offset of the command in the text
+     * @param end the offset just past the command
+     * @param tokens buffer to fill; its previous contents are replaced
+     */
+    public void tokenize(CharSequence input, int start, int end, TokenBuffer tokens) {
+        tokens.clear(input, this);
+        int i = start;
+        while (i < end) {
+            while (i < end && Character.isWhitespace(input.charAt(i))) i++;
+            if (i == end) break;
+            int wordStart = i;
+            int hash = 0;
+            while (i < end && !Character.isWhitespace(input.charAt(i))) {
+                hash = hash * 31 + Character.toUpperCase(input.charAt(i));
+                i++;
+            }
+            tokens.add(lookup(input, wordStart, i, mix(hash)), wordStart, i);
+        }
+    }
+
+    /**
+     * idOf
+     * __________________________
+     * @param word a word, in any case
+     * @return the token id of the word, or UNKNOWN
+     */
+    public int idOf(CharSequence word) {
+        return lookup(word, 0, word.length(), hash(word, 0, word.length()));
+    }
+
+    /**
+     * Find a word of the table.
+     *
+     * @return its token id, or UNKNOWN
+     */
+    private int lookup(CharSequence text, int start, int end, int hash) {
+        int mask = this.table.length - 1;
+        for (int slot = hash & mask; this.table[slot] != 0; slot = (slot + 1) & mask) {
+            int word = this.table[slot] - 1;
+            if (this.hashes[word] == hash && matches(this.words[word], text, start, end)) return this.tokenIds[word];
+        }
+        return UNKNOWN;
+    }
+
+    private static boolean matches(char[] word, CharSequence text, int start, int end) {
+        if (word.length != end - start) return false;
+        for (int i = 0; i < word.length; i++) {
+            if (word[i] != Character.toUpperCase(text.charAt(start + i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * name
+     * __________________________
+     * @param tokenId a token id
+     * @return the word the token stands for
+     */
+    public String name(int tokenId) {
+        return this.symbols.name(tokenId);
+    }
+
+    /**
+     * tokenCount
+     * __________________________
+     * @return the number of token ids; every id is smaller
+     */
+    public int tokenCount() {
+        return this.symbols.size();
+    }
+
+    /**
+     * size
+     * __________________________
+     * @return the number of words, synonyms included
+     */
+    public int size() {
+        return this.words.length;
+    }
+}
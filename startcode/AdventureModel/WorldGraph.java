@@ -0,0 +1,536 @@
+package AdventureModel;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WorldGraph
+ * __________________________
+ * The passages of a whole world, stored as flat arrays of numbers.
+ *
+ * Each room number the world mentions, as a room or as the destination of
+ * a passage (such as room 0, which ends the game), gets a dense id, in room
+ * number order. The passages of room id r are the entries passageStart[r]
+ * up to passageStart[r + 1] of the passage arrays, in the order of the game
+ * files: the direction id, the id of the destination room and the id of the
+ * key, or NO_KEY. Directions and keys are ids of the world's SymbolTable.
+ * A passage gated by more than a plain key (see PassageCondition) has a
+ * key below NO_KEY instead, which numbers its compiled condition.
+ *
+ * Each room also has its passages indexed by direction: candidate entries
+ * passageStart[r] up to passageStart[r + 1] list the passages of room r
+ * sorted by direction id, and within one direction in the order a move
+ * tries them: blocked passages first, then open ones, each in file order.
+ * A move is then a binary search for the direction followed by a walk over
+ * its candidates.
+ *
+ * A room whose first passage is FORCED moves the player on at once. When
+ * the graph is built, each such room gets its forced successor: the room
+ * its FORCED passages always lead to, or DEPENDS if which one is taken
+ * depends on the player. Chains of fixed successors that loop back on
+ * themselves would never end, so they are rejected then.
+ *
+ * Room and PassageTable are views over the graph for the rest of the game.
+ */
+public final class WorldGraph {
+
+    /**
+     * Key id of a passage that is not blocked.
+     */
+    public static final int NO_KEY = -1;
+
+    /**
+     * Forced successor of a room that is not forced.
+     */
+    public static final int NOT_FORCED = -1;
+
+    /**
+     * Forced successor of a room whose FORCED passages are blocked, so the
+     * player's state picks which one is taken.
+     */
+    public static final int DEPENDS = -2;
+
+    private final SymbolTable symbols; //directions and key names
+    private final int[] roomNumbers; //room number of each room id, ascending
+    private final int firstNumber; //room number of id 0
+    private final int[] idByNumber; //room id of each room number from firstNumber on, or null if room numbers are too sparse
+    private final int[] passageStart; //first passage of each room id; one entry more than there are rooms
+    private final short[] directions; //direction id of each passage
+    private final int[] destinations; //destination room id of each passage
+    private final int[] keys; //key id of each passage, NO_KEY, or the number of a condition encoded by conditionKey
+    private final PassageCondition[] conditions; //compiled conditions of the passages that have one
+    private final int[] candidates; //passages of each room by direction, in the order a move tries them
+    private final short[] candidateDirections; //direction id of each candidate
+    private final int forced; //direction id of FORCED, or -1
+    private final int[] forcedSuccessors; //forced successor of each room id: a room id, NOT_FORCED or DEPENDS
+    private final int forcedRoomCount; //number of forced rooms
+
+    /**
+     * WorldGraph Constructor
+     * __________________________
+     * Use a Builder to make a graph.
+     */
+    private WorldGraph(SymbolTable symbols, int[] roomNumbers, int[] passageStart, short[] directions, int[] destinations, int[] keys,
+                       PassageCondition[] conditions) {
+        this.symbols = symbols;
+        this.conditions = conditions;
+        this.roomNumbers = roomNumbers;
+        this.passageStart = passageStart;
+        this.directions = directions;
+        this.destinations = destinations;
+        this.keys = keys;
+        this.forced = symbols.idOf("FORCED");
+        this.candidates = new int[directions.length];
+        this.candidateDirections = new short[directions.length];
+        long[] order = new long[directions.length];
+        for (int p = 0; p < directions.length; p++) {
+            long open = keys[p] == NO_KEY ? 1 : 0;
+            order[p] = (long) directions[p] << 33 | open << 32 | p;
+        }
+        for (int room = 0; room < roomNumbers.length; room++) {
+            Arrays.sort(order, passageStart[room], passageStart[room + 1]);
+        }
+        for (int c = 0; c < order.length; c++) {
+            this.candidates[c] = (int) order[c];
+            this.candidateDirections[c] = (short) (order[c] >>> 33);
+        }
+        this.forcedSuccessors = new int[roomNumbers.length];
+        int forcedRooms = 0;
+        for (int room = 0; room < roomNumbers.length; room++) {
+            if (!isForced(room)) {
+                this.forcedSuccessors[room] = NOT_FORCED;
+                continue;
+            }
+            forcedRooms++;
+            int first = this.candidates[firstCandidate(room, this.forced)]; //blocked passages sort first
+            this.forcedSuccessors[room] = keys[first] == NO_KEY ? destinations[first] : DEPENDS;
+        }
+        this.forcedRoomCount = forcedRooms;
+        this.firstNumber = roomNumbers.length == 0 ? 0 : roomNumbers[0];
+        long span = roomNumbers.length == 0 ? 0 : (long) roomNumbers[roomNumbers.length - 1] - this.firstNumber + 1;
+        if (span <= 4L * roomNumbers.length + 1024) {
+            this.idByNumber = new int[(int) span];
+            Arrays.fill(this.idByNumber, -1);
+            for (int id = 0; id < roomNumbers.length; id++) this.idByNumber[roomNumbers[id] - this.firstNumber] = id;
+        } else {
+            this.idByNumber = null;
+        }
+        checkForcedCycles();
+    }
+
+    /**
+     * Follow the fixed forced successors from every room, and fail if a
+     * chain comes back to a room it already passed through.
+     *
+     * @throws IllegalStateException if the FORCED passages of some rooms loop
+     */
+    private void checkForcedCycles() {
+        byte[] state = new byte[this.roomNumbers.length]; //0: not reached yet, 1: on the chain being followed, 2: done
+        for (int start = 0; start < state.length; start++) {
+            int room = start;
+            while (state[room] == 0 && this.forcedSuccessors[room] >= 0 && !endsGame(room)) {
+                state[room] = 1;
+                room = this.forcedSuccessors[room];
+            }
+            if (state[room] == 1) {
+                StringBuilder loop = new StringBuilder("FORCED passages loop forever through rooms " + this.roomNumbers[room]);
+                for (int next = this.forcedSuccessors[room]; next != room; next = this.forcedSuccessors[next]) {
+                    loop.append(", ").append(this.roomNumbers[next]);
+                }
+                throw new IllegalStateException(loop.toString());
+            }
+            for (room = start; state[room] == 1; room = this.forcedSuccessors[room]) state[room] = 2;
+            state[room] = 2;
+        }
+    }
+
+    /**
+     * build
+     * __________________________
+     * Make the graph of a world whose rooms are all loaded.
+     *
+     * @param rooms the rooms of the world, by number
+     * @return the graph of their passages
+     */
+    static WorldGraph build(Map<Integer, Room> rooms) {
+        Builder builder = new Builder();
+        for (Room room : rooms.values()) {
+            builder.room(room.getRoomNumber());
+            for (Passage passage : room.getMotionTable().getDirection()) builder.passage(passage);
+        }
+        return builder.build();
+    }
+
+    /**
+     * getSymbols
+     * __________________________
+     * @return the table of directions and key names of the world
+     */
+    public SymbolTable getSymbols() {
+        return this.symbols;
+    }
+
+    /**
+     * roomCount
+     * __________________________
+     * @return the number of room ids, which includes destinations that are not rooms
+     */
+    public int roomCount() {
+        return this.roomNumbers.length;
+    }
+
+    /**
+     * roomId
+     * __________________________
+     * @param roomNumber a room number
+     * @return the id of the room, or -1 if the world does not mention it
+     */
+    public int roomId(int roomNumber) {
+        if (this.idByNumber != null) {
+            long index = (long) roomNumber - this.firstNumber;
+            return index < 0 || index >= this.idByNumber.length ? -1 : this.idByNumber[(int) index];
+        }
+        int id = Arrays.binarySearch(this.roomNumbers, roomNumber);
+        return id < 0 ? -1 : id;
+    }
+
+    /**
+     * roomNumber
+     * __________________________
+     * @param roomId the id of a room
+     * @return the room number
+     */
+    public int roomNumber(int roomId) {
+        return this.roomNumbers[roomId];
+    }
+
+    /**
+     * passageStart
+     * __________________________
+     * @param roomId the id of a room
+     * @return the index of the first passage of the room
+     */
+    public int passageStart(int roomId) {
+        return this.passageStart[roomId];
+    }
+
+    /**
+     * passageEnd
+     * __________________________
+     * @param roomId the id of a room
+     * @return the index just past the last passage of the room
+     */
+    public int passageEnd(int roomId) {
+        return this.passageStart[roomId + 1];
+    }
+
+    /**
+     * direction
+     * __________________________
+     * @param passage the index of a passage
+     * @return the direction id of the passage
+     */
+    public int direction(int passage) {
+        return this.directions[passage];
+    }
+
+    /**
+     * destination
+     * __________________________
+     * @param passage the index of a passage
+     * @return the id of the room the passage leads to
+     */
+    public int destination(int passage) {
+        return this.destinations[passage];
+    }
+
+    /**
+     * key
+     * __________________________
+     * @param passage the index of a passage
+     * @return the key id of the passage, NO_KEY if it is not blocked, or a
+     * number below NO_KEY if it has a condition
+     */
+    public int key(int passage) {
+        return this.keys[passage];
+    }
+
+    /**
+     * condition
+     * __________________________
+     * @param passage the index of a passage
+     * @return the compiled condition of the passage, or null if it has none or just a plain key
+     */
+    PassageCondition condition(int passage) {
+        int key = this.keys[passage];
+        return key < NO_KEY ? this.conditions[conditionKey(key)] : null;
+    }
+
+    /**
+     * Turns the number of a condition into the key that refers to it, and back.
+     */
+    private static int conditionKey(int number) {
+        return NO_KEY - 1 - number;
+    }
+
+    /**
+     * hasDirection
+     * __________________________
+     * @param roomId the id of a room
+     * @param direction a direction id
+     * @return true if the room has a passage in that direction
+     */
+    public boolean hasDirection(int roomId, int direction) {
+        return firstCandidate(roomId, direction) >= 0;
+    }
+
+    /**
+     * firstCandidate
+     * __________________________
+     * Find the passages of a room in a direction. The candidates of the
+     * direction run from the returned index while candidateDirection stays
+     * the same, up to passageEnd of the room.
+     *
+     * @param roomId the id of a room
+     * @param direction a direction id
+     * @return the index of the first candidate passage, or -1 if there is none
+     */
+    public int firstCandidate(int roomId, int direction) {
+        int low = this.passageStart[roomId];
+        int high = this.passageStart[roomId + 1];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.candidateDirections[middle] < direction) low = middle + 1;
+            else high = middle;
+        }
+        return low < this.passageStart[roomId + 1] && this.candidateDirections[low] == direction ? low : -1;
+    }
+
+    /**
+     * candidate
+     * __________________________
+     * @param candidate the index of a candidate
+     * @return the passage it stands for
+     */
+    public int candidate(int candidate) {
+        return this.candidates[candidate];
+    }
+
+    /**
+     * candidateDirection
+     * __________________________
+     * @param candidate the index of a candidate
+     * @return the direction id of the passage it stands for
+     */
+    public int candidateDirection(int candidate) {
+        return this.candidateDirections[candidate];
+    }
+
+    /**
+     * isForced
+     * __________________________
+     * @param roomId the id of a room
+     * @return true if entering the room moves the player on at once,
+     * i.e. its first passage is FORCED
+     */
+    public boolean isForced(int roomId) {
+        int first = this.passageStart[roomId];
+        return first < this.passageStart[roomId + 1] && this.directions[first] == this.forced;
+    }
+
+    /**
+     * forcedSuccessor
+     * __________________________
+     * @param roomId the id of a room
+     * @return the id of the room its FORCED passages always lead to,
+     * NOT_FORCED if it is not forced, or DEPENDS if the player's state decides
+     */
+    public int forcedSuccessor(int roomId) {
+        return this.forcedSuccessors[roomId];
+    }
+
+    /**
+     * forcedCandidate
+     * __________________________
+     * @param roomId the id of a forced room
+     * @return the index of its first candidate FORCED passage
+     */
+    public int forcedCandidate(int roomId) {
+        return firstCandidate(roomId, this.forced);
+    }
+
+    /**
+     * endsGame
+     * __________________________
+     * @param roomId the id of a room
+     * @return true if the room is forced and its first passage leads to room 0,
+     * i.e. the player wins or dies there
+     */
+    public boolean endsGame(int roomId) {
+        return isForced(roomId) && this.roomNumbers[this.destinations[this.passageStart[roomId]]] == 0;
+    }
+
+    /**
+     * forcedRoomCount
+     * __________________________
+     * @return the number of forced rooms; a chain of forced moves that does
+     * not loop passes through at most this many
+     */
+    public int forcedRoomCount() {
+        return this.forcedRoomCount;
+    }
+
+    /**
+     * commands
+     * __________________________
+     * @param roomId the id of a room
+     * @return the directions of the passages of the room, comma delimited
+     */
+    public String commands(int roomId) {
+        StringBuilder commands = new StringBuilder();
+        for (int p = this.passageStart[roomId], end = this.passageStart[roomId + 1]; p < end; p++) {
+            if (commands.length() > 0) commands.append(", ");
+            commands.append(this.symbols.name(this.directions[p]));
+        }
+        return commands.toString();
+    }
+
+    /**
+     * passages
+     * __________________________
+     * @param roomId the id of a room
+     * @return read-only view of the passages of the room as Passage objects
+     */
+    public List<Passage> passages(int roomId) {
+        int start = this.passageStart[roomId];
+        int size = this.passageStart[roomId + 1] - start;
+        return new AbstractList<>() {
+            @Override
+            public Passage get(int index) {
+                if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+                int p = start + index;
+                int keyId = keys[p];
+                String key = keyId == NO_KEY ? null : keyId < NO_KEY ? conditions[conditionKey(keyId)].toString() : symbols.name(keyId);
+                return new Passage(symbols.name(directions[p]), roomNumbers[destinations[p]], key);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Builder
+     * __________________________
+     * Collects the passages of a world one room at a time, in file order.
+     * As with the rooms themselves, a room number that appears twice keeps
+     * the passages of its last entry.
+     */
+    static class Builder {
+        private final SymbolTable symbols = new SymbolTable();
+        private int roomCount;
+        private int[] roomNumbers = new int[64]; //room number of each entry
+        private int[] firstPassages = new int[64]; //first passage of each entry
+        private int passageCount;
+        private int[] directions = new int[256];
+        private int[] destinations = new int[256]; //room numbers until the graph is built
+        private int[] keys = new int[256];
+        private final List<PassageCondition> conditions = new ArrayList<>();
+
+        /**
+         * Start the passages of a room.
+         *
+         * @param roomNumber the room number
+         */
+        void room(int roomNumber) {
+            if (this.roomCount == this.roomNumbers.length) {
+                this.roomNumbers = Arrays.copyOf(this.roomNumbers, this.roomCount * 2);
+                this.firstPassages = Arrays.copyOf(this.firstPassages, this.roomCount * 2);
+            }
+            this.roomNumbers[this.roomCount] = roomNumber;
+            this.firstPassages[this.roomCount] = this.passageCount;
+            this.roomCount++;
+        }
+
+        /**
+         * Add a passage to the room started last.
+         *
+         * @param passage the passage
+         */
+        void passage(Passage passage) {
+            if (this.roomCount == 0) throw new IllegalStateException("Passage " + passage.getDirection() + " is not in a room");
+            if (this.passageCount == this.directions.length) {
+                this.directions = Arrays.copyOf(this.directions, this.passageCount * 2);
+                this.destinations = Arrays.copyOf(this.destinations, this.passageCount * 2);
+                this.keys = Arrays.copyOf(this.keys, this.passageCount * 2);
+            }
+            int direction = this.symbols.intern(passage.getDirection());
+            if (direction > Short.MAX_VALUE) throw new IllegalStateException("Too many distinct directions and keys");
+            this.directions[this.passageCount] = direction;
+            this.destinations[this.passageCount] = passage.getDestinationRoom();
+            this.keys[this.passageCount] = key(passage.getKeyName());
+            this.passageCount++;
+        }
+
+        /**
+         * @return the key of a passage: NO_KEY, the symbol id of a plain key,
+         * or the number of its newly compiled condition
+         */
+        private int key(String keyName) {
+            if (keyName == null) return NO_KEY;
+            if (PassageCondition.isPlainKey(keyName)) return this.symbols.intern(keyName);
+            this.conditions.add(PassageCondition.compile(keyName, this.symbols));
+            return conditionKey(this.conditions.size() - 1);
+        }
+
+        /**
+         * @return the graph of every passage added so far
+         */
+        WorldGraph build() {
+            //the last entry of each room number wins
+            Integer[] order = new Integer[this.roomCount];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> this.roomNumbers[a] != this.roomNumbers[b]
+                    ? Integer.compare(this.roomNumbers[a], this.roomNumbers[b]) : Integer.compare(b, a));
+
+            //every room number mentioned, as a room or a destination, gets an id
+            int[] numbers = new int[this.roomCount + this.passageCount];
+            System.arraycopy(this.roomNumbers, 0, numbers, 0, this.roomCount);
+            System.arraycopy(this.destinations, 0, numbers, this.roomCount, this.passageCount);
+            Arrays.sort(numbers);
+            int distinct = 0;
+            for (int i = 0; i < numbers.length; i++) {
+                if (distinct == 0 || numbers[distinct - 1] != numbers[i]) numbers[distinct++] = numbers[i];
+            }
+            int[] roomNumbers = Arrays.copyOf(numbers, distinct);
+
+            int[] passageStart = new int[distinct + 1];
+            short[] directions = new short[this.passageCount];
+            int[] destinations = new int[this.passageCount];
+            int[] keys = new int[this.passageCount];
+            int next = 0; //next room id to fill in
+            int count = 0; //passages laid out so far
+            for (int i = 0; i < order.length; i++) {
+                int entry = order[i];
+                if (i > 0 && this.roomNumbers[order[i - 1]] == this.roomNumbers[entry]) continue; //an earlier entry of the same room
+                int id = Arrays.binarySearch(roomNumbers, this.roomNumbers[entry]);
+                while (next <= id) passageStart[next++] = count;
+                int end = entry + 1 < this.roomCount ? this.firstPassages[entry + 1] : this.passageCount;
+                for (int p = this.firstPassages[entry]; p < end; p++) {
+                    directions[count] = (short) this.directions[p];
+                    destinations[count] = Arrays.binarySearch(roomNumbers, this.destinations[p]);
+                    keys[count] = this.keys[p];
+                    count++;
+                }
+            }
+            while (next <= distinct) passageStart[next++] = count;
+            return new WorldGraph(this.symbols, roomNumbers, passageStart, Arrays.copyOf(directions, count),
+                    Arrays.copyOf(destinations, count), Arrays.copyOf(keys, count), this.conditions.toArray(new PassageCondition[0]));
+        }
+    }
+}
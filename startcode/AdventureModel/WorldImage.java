@@ -0,0 +1,453 @@
+package AdventureModel;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * WorldImage
+ * __________________________
+ * A compiled, binary copy of the static part of a game: its rooms, passages,
+ * starting object placement, synonyms and help text. The text files stay the
+ * authoring format; the image (world.advb in the game directory) only exists
+ * to make startup fast, since it is memory-mapped and decoded without any
+ * text parsing. Only the passages and object names are decoded when a game
+ * loads; each room is decoded the first time it is used (see ImageRoomMap).
+ *
+ * Layout (all numbers big-endian):
+ *   header      magic, version, size and modification time of every source file,
+ *               section counts, help text string id and section offsets
+ *   strings     an offset per string, then each string as a length-prefixed UTF-8 run
+ *   rooms       per room, by room number: number, name id, description id, first passage, passage count
+ *   passages    per passage: direction id, destination room, key id (-1 if open)
+ *   objects     per object, by room number: name id, description id, room number
+ *   synonyms    per synonym: synonym id, command id
+ *
+ * Run it with the names of the games to compile, e.g. "java AdventureModel.WorldImage TinyGame".
+ */
+public class WorldImage {
+
+    public static final String IMAGE_FILE_NAME = "world.advb"; //name of the image within a game directory
+
+    private static final int MAGIC = 0x41445642; //"ADVB"
+    private static final int VERSION = 1;
+    private static final String[] SOURCE_FILES = {"rooms.txt", "objects.txt", "synonyms.txt", "help.txt"}; //files the image is compiled from
+    private static final int HEADER_SIZE = 4 + 4 + SOURCE_FILES.length * 16 + 6 * 4 + 5 * 4;
+
+    private static final int ROOM_RECORD_SIZE = 20;
+    private static final int PASSAGE_RECORD_SIZE = 12;
+    private static final int OBJECT_RECORD_SIZE = 12;
+    private static final int SYNONYM_RECORD_SIZE = 8;
+
+    private final ByteBuffer buffer; //the mapped image
+    private final String[] strings; //strings decoded so far, by id; filled in by any thread
+    private final int roomCount, passageCount, objectCount, synonymCount, helpId;
+    private final int stringsOffset, roomsOffset, passagesOffset, objectsOffset, synonymsOffset;
+
+    /**
+     * WorldImage Constructor
+     * __________________________
+     * Read the header of a mapped image.
+     *
+     * @param buffer the mapped image
+     */
+    private WorldImage(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a version " + VERSION + " world image");
+        }
+        int position = 8 + SOURCE_FILES.length * 16;
+        this.strings = new String[buffer.getInt(position)];
+        this.roomCount = buffer.getInt(position + 4);
+        this.passageCount = buffer.getInt(position + 8);
+        this.objectCount = buffer.getInt(position + 12);
+        this.synonymCount = buffer.getInt(position + 16);
+        this.helpId = buffer.getInt(position + 20);
+        this.stringsOffset = buffer.getInt(position + 24);
+        this.roomsOffset = buffer.getInt(position + 28);
+        this.passagesOffset = buffer.getInt(position + 32);
+        this.objectsOffset = buffer.getInt(position + 36);
+        this.synonymsOffset = buffer.getInt(position + 40);
+    }
+
+    /**
+     * imageFile
+     * __________________________
+     * @param directoryName the game directory
+     * @return the image file of the game, which may not exist
+     */
+    public static File imageFile(String directoryName) {
+        return new File(directoryName, IMAGE_FILE_NAME);
+    }
+
+    /**
+     * isFresh
+     * __________________________
+     * Check that the image of a game exists and was compiled from the current text files.
+     *
+     * @param directoryName the game directory
+     * @return true if the image can be used instead of the text files
+     */
+    public static boolean isFresh(String directoryName) {
+        File image = imageFile(directoryName);
+        if (!image.isFile() || image.length() < HEADER_SIZE) return false;
+        try (FileChannel channel = FileChannel.open(image.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8 + SOURCE_FILES.length * 16);
+            while (header.hasRemaining() && channel.read(header) >= 0) { }
+            header.flip();
+            if (header.remaining() < header.capacity() || header.getInt() != MAGIC || header.getInt() != VERSION) return false;
+            for (long stamp : stamp(directoryName)) {
+                if (header.getLong() != stamp) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * stamp
+     * __________________________
+     * Read the size and modification time of every file an image is compiled
+     * from. A world that is compiled into an image must be stamped before
+     * its files are parsed, so that an edit made while they are parsed makes
+     * the image stale rather than being missed.
+     *
+     * @param directoryName the game directory
+     * @return the size and modification time of each source file, in turn
+     */
+    public static long[] stamp(String directoryName) {
+        long[] stamps = new long[SOURCE_FILES.length * 2];
+        for (int i = 0; i < SOURCE_FILES.length; i++) {
+            File file = new File(directoryName, SOURCE_FILES[i]);
+            stamps[2 * i] = file.length();
+            stamps[2 * i + 1] = file.lastModified();
+        }
+        return stamps;
+    }
+
+    /**
+     * open
+     * __________________________
+     * Memory-map the image of a game.
+     *
+     * @param directoryName the game directory
+     * @return the mapped image
+     */
+    public static WorldImage open(String directoryName) throws IOException {
+        try (FileChannel channel = FileChannel.open(imageFile(directoryName).toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new WorldImage(buffer);
+        }
+    }
+
+    /**
+     * getRoomCount
+     * __________________________
+     * @return the number of rooms in the image
+     */
+    public int getRoomCount() {
+        return this.roomCount;
+    }
+
+    /**
+     * getSize
+     * __________________________
+     * @return the size of the image in bytes
+     */
+    public long getSize() {
+        return this.buffer.capacity();
+    }
+
+    /**
+     * string
+     * __________________________
+     * Decode a string of the string table. Each string is decoded once,
+     * so repeated names and directions share one String. Games decoding
+     * rooms at the same time may both decode a string; one of the copies
+     * is kept, which is safe as Strings can be shared however they are.
+     *
+     * @param id the string id, or -1
+     * @return the string, or null for -1
+     */
+    private String string(int id) {
+        if (id < 0) return null;
+        String value = this.strings[id];
+        if (value == null) {
+            int offset = this.buffer.getInt(this.stringsOffset + id * 4);
+            int length = this.buffer.getInt(offset);
+            byte[] bytes = new byte[length];
+            this.buffer.get(offset + 4, bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            this.strings[id] = value;
+        }
+        return value;
+    }
+
+    /**
+     * readRooms
+     * __________________________
+     * Get the rooms of the image, with their passages and their starting
+     * objects. Each room is decoded the first time it is asked for.
+     *
+     * @param adventureName the game directory, stored in each room
+     * @return the rooms, by number
+     */
+    public Map<Integer, Room> readRooms(String adventureName) {
+        return new ImageRoomMap(this, adventureName);
+    }
+
+    /**
+     * @param index the position of a room in the image, in room number order
+     * @return the number of the room
+     */
+    int roomNumber(int index) {
+        return this.buffer.getInt(this.roomsOffset + index * ROOM_RECORD_SIZE);
+    }
+
+    /**
+     * Decode the passages of every room.
+     *
+     * @return the graph of the world
+     */
+    WorldGraph readGraph() {
+        WorldGraph.Builder builder = new WorldGraph.Builder();
+        for (int i = 0; i < this.roomCount; i++) {
+            int record = this.roomsOffset + i * ROOM_RECORD_SIZE;
+            builder.room(this.buffer.getInt(record));
+            int firstPassage = this.buffer.getInt(record + 12);
+            int passages = this.buffer.getInt(record + 16);
+            for (int p = firstPassage; p < firstPassage + passages; p++) {
+                int passage = this.passagesOffset + p * PASSAGE_RECORD_SIZE;
+                builder.passage(new Passage(string(this.buffer.getInt(passage)),
+                        this.buffer.getInt(passage + 4), string(this.buffer.getInt(passage + 8))));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Decode the names of the starting objects, adding them to the symbols of the world.
+     *
+     * @param symbols the symbols of the world, not yet seen by any game
+     * @return the name of every starting object
+     */
+    List<String> readObjectNames(SymbolTable symbols) {
+        List<String> names = new ArrayList<>(this.objectCount);
+        for (int i = 0; i < this.objectCount; i++) {
+            names.add(symbols.name(symbols.intern(string(this.buffer.getInt(this.objectsOffset + i * OBJECT_RECORD_SIZE)))));
+        }
+        return names;
+    }
+
+    /**
+     * Decode one room with the objects it starts with.
+     *
+     * @param index the position of the room in the image, in room number order
+     * @param adventureName the game directory, stored in the room
+     * @param graph the graph of the world, whose symbols hold the object names
+     * @return the room
+     */
+    Room readRoom(int index, String adventureName, WorldGraph graph) {
+        int record = this.roomsOffset + index * ROOM_RECORD_SIZE;
+        int roomNumber = this.buffer.getInt(record);
+        Room room = new Room(string(this.buffer.getInt(record + 4)), roomNumber, string(this.buffer.getInt(record + 8)), adventureName);
+        room.useGraph(graph);
+
+        SymbolTable symbols = graph.getSymbols();
+        for (int i = firstObject(roomNumber); i < this.objectCount; i++) {
+            int object = this.objectsOffset + i * OBJECT_RECORD_SIZE;
+            if (this.buffer.getInt(object + 8) != roomNumber) break;
+            String name = symbols.name(symbols.idOf(string(this.buffer.getInt(object)))); //the one copy of the name
+            room.addGameObject(new AdventureObject(name, string(this.buffer.getInt(object + 4)), room));
+        }
+        return room;
+    }
+
+    /**
+     * @return the first object record of a room, found by binary search
+     */
+    private int firstObject(int roomNumber) {
+        int low = 0;
+        int high = this.objectCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.buffer.getInt(this.objectsOffset + middle * OBJECT_RECORD_SIZE + 8) < roomNumber) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * readSynonyms
+     * __________________________
+     * @param synonyms map to add the synonyms of the image to
+     */
+    public void readSynonyms(Map<String, String> synonyms) {
+        for (int i = 0; i < this.synonymCount; i++) {
+            int record = this.synonymsOffset + i * SYNONYM_RECORD_SIZE;
+            synonyms.put(string(this.buffer.getInt(record)), string(this.buffer.getInt(record + 4)));
+        }
+    }
+
+    /**
+     * getHelpText
+     * __________________________
+     * @return the help text of the image
+     */
+    public String getHelpText() {
+        return string(this.helpId);
+    }
+
+    /**
+     * write
+     * __________________________
+     * Compile the world of a game into its image. The image
+     * is written to a temporary file first and then moved into place, so readers
+     * never see a half-written image.
+     *
+     * @param world the world, as just loaded from its text files
+     * @param directoryName the game directory
+     * @param sources the stamp of the text files, taken before they were parsed (see stamp)
+     */
+    public static void write(WorldTemplate world, String directoryName, long[] sources) throws IOException {
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        ByteArrayOutputStream rooms = new ByteArrayOutputStream();
+        ByteArrayOutputStream passages = new ByteArrayOutputStream();
+        ByteArrayOutputStream objects = new ByteArrayOutputStream();
+        ByteArrayOutputStream synonyms = new ByteArrayOutputStream();
+        DataOutputStream roomOut = new DataOutputStream(rooms);
+        DataOutputStream passageOut = new DataOutputStream(passages);
+        DataOutputStream objectOut = new DataOutputStream(objects);
+        DataOutputStream synonymOut = new DataOutputStream(synonyms);
+
+        int passageCount = 0;
+        int objectCount = 0;
+        for (Room room : new TreeMap<>(world.getRooms()).values()) {
+            List<Passage> table = room.getMotionTable().getDirection();
+            roomOut.writeInt(room.getRoomNumber());
+            roomOut.writeInt(stringId(room.getRoomName(), stringIds, strings));
+            roomOut.writeInt(stringId(room.getRawDescription(), stringIds, strings));
+            roomOut.writeInt(passageCount);
+            roomOut.writeInt(table.size());
+            for (Passage passage : table) {
+                passageOut.writeInt(stringId(passage.getDirection(), stringIds, strings));
+                passageOut.writeInt(passage.getDestinationRoom());
+                passageOut.writeInt(stringId(passage.getKeyName(), stringIds, strings));
+                passageCount++;
+            }
+            for (AdventureObject object : room.getObjects()) {
+                objectOut.writeInt(stringId(object.getName(), stringIds, strings));
+                objectOut.writeInt(stringId(object.getDescription(), stringIds, strings));
+                objectOut.writeInt(room.getRoomNumber());
+                objectCount++;
+            }
+        }
+        for (Map.Entry<String, String> synonym : world.getSynonyms().entrySet()) {
+            synonymOut.writeInt(stringId(synonym.getKey(), stringIds, strings));
+            synonymOut.writeInt(stringId(synonym.getValue(), stringIds, strings));
+        }
+        int helpId = stringId(world.getHelpText(), stringIds, strings);
+
+        ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+        DataOutputStream stringOut = new DataOutputStream(stringData);
+        int stringsOffset = HEADER_SIZE;
+        int dataOffset = stringsOffset + strings.size() * 4;
+        int[] stringOffsets = new int[strings.size()];
+        for (int i = 0; i < strings.size(); i++) {
+            byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            stringOffsets[i] = dataOffset + stringData.size();
+            stringOut.writeInt(bytes.length);
+            stringOut.write(bytes);
+        }
+        int roomsOffset = dataOffset + stringData.size();
+        int passagesOffset = roomsOffset + rooms.size();
+        int objectsOffset = passagesOffset + passages.size();
+        int synonymsOffset = objectsOffset + objects.size();
+
+        Path target = imageFile(directoryName).toPath();
+        Path temporary = target.resolveSibling(IMAGE_FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (long stamp : sources) out.writeLong(stamp);
+            out.writeInt(strings.size());
+            out.writeInt(world.getRooms().size());
+            out.writeInt(passageCount);
+            out.writeInt(objectCount);
+            out.writeInt(world.getSynonyms().size());
+            out.writeInt(helpId);
+            out.writeInt(stringsOffset);
+            out.writeInt(roomsOffset);
+            out.writeInt(passagesOffset);
+            out.writeInt(objectsOffset);
+            out.writeInt(synonymsOffset);
+            for (int offset : stringOffsets) out.writeInt(offset);
+            stringData.writeTo(out);
+            rooms.writeTo(out);
+            passages.writeTo(out);
+            objects.writeTo(out);
+            synonyms.writeTo(out);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Look up or add a string in the string table being written.
+     *
+     * @param value the string, or null
+     * @return the id of the string, or -1 for null
+     */
+    private static int stringId(String value, Map<String, Integer> stringIds, List<String> strings) {
+        if (value == null) return -1;
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.add(value);
+            stringIds.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * compile
+     * __________________________
+     * Compile the image of a game from its text files, replacing any image it already has.
+     *
+     * @param name the name of the game, i.e. its directory within Games
+     */
+    public static void compile(String name) throws IOException {
+        String directoryName = "Games/" + name;
+        Files.deleteIfExists(imageFile(directoryName).toPath()); //make sure the game is loaded from text
+        long[] sources = stamp(directoryName);
+        write(new AdventureLoader(directoryName).loadWorld(), directoryName, sources);
+    }
+
+    /**
+     * Compile the images of the games named on the command line.
+     *
+     * @param args the names of the games to compile
+     */
+    public static void main(String[] args) throws IOException {
+        for (String name : args) {
+            compile(name);
+            System.out.println("Compiled " + imageFile("Games/" + name) + " (" + imageFile("Games/" + name).length() + " bytes)");
+        }
+    }
+}
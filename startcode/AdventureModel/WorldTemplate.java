@@ -0,0 +1,252 @@
+package AdventureModel;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WorldTemplate
+ * __________________________
+ * The static part of a game: its rooms with their descriptions, passages and
+ * starting objects, its synonyms and its help text. A template is loaded once
+ * per game directory and shared by every game played from it; it is never
+ * changed afterwards. The passages of every room are kept in one WorldGraph,
+ * which the passage tables of the rooms are views of. Each game keeps only what its player changed, in its
+ * own copies of the rooms it used (see SessionRooms).
+ *
+ * When the game files are edited while games are running, a new template
+ * replaces the old one (see GameDirectoryWatcher).
+ */
+public class WorldTemplate implements Serializable {
+
+    private static final Map<String, CompletableFuture<WorldTemplate>> TEMPLATES = new ConcurrentHashMap<>(); //loaded or loading, by game directory
+
+    private final String directoryName; //the game directory
+    private final Map<Integer, Room> rooms; //the rooms as they are when a game starts, by number
+    private final WorldGraph graph; //the passages of every room
+    private final List<String> objectNames; //names of the objects the rooms start with
+    private final Vocabulary vocabulary; //every word the world understands
+    private final CommandHandler[] commands; //handler of each verb, by token id
+    private final Map<String, String> synonyms; //synonyms of commands
+    private final String helpText; //the help text of the game
+
+    /**
+     * WorldTemplate Constructor
+     * __________________________
+     *
+     * @param directoryName the game directory
+     * @param rooms the rooms, as just loaded; rooms that are not read lazily
+     *              are bound to the graph of this template, so they must not
+     *              belong to another template, nor change afterwards
+     * @param synonyms synonyms of commands
+     * @param helpText the help text of the game
+     */
+    WorldTemplate(String directoryName, Map<Integer, Room> rooms, Map<String, String> synonyms, String helpText) {
+        this.directoryName = directoryName;
+        if (rooms instanceof IndexedRooms) {
+            this.rooms = rooms;
+            this.graph = ((IndexedRooms) rooms).getGraph();
+        } else {
+            this.rooms = Collections.unmodifiableMap(rooms);
+            this.graph = WorldGraph.build(rooms);
+            for (Room room : rooms.values()) room.useGraph(this.graph);
+        }
+        List<String> objectNames = new ArrayList<>();
+        if (rooms instanceof IndexedRooms) {
+            objectNames.addAll(((IndexedRooms) rooms).getObjectNames());
+        } else {
+            for (Room room : rooms.values()) {
+                for (AdventureObject object : room.getObjects()) {
+                    object.internName(this.graph.getSymbols());
+                    objectNames.add(object.getName());
+                }
+            }
+        }
+        this.objectNames = Collections.unmodifiableList(objectNames);
+        //a graph that was built before this template may be in use by games already; the words go into a copy of its symbols
+        SymbolTable symbols = rooms instanceof IndexedRooms ? this.graph.getSymbols().copy() : this.graph.getSymbols();
+        this.vocabulary = compileVocabulary(symbols, this.objectNames, synonyms);
+        this.commands = CommandRegistry.getDefault().compile(this.vocabulary);
+        this.synonyms = Map.copyOf(synonyms);
+        this.helpText = helpText;
+    }
+
+    /**
+     * WorldTemplate Constructor
+     * __________________________
+     * Make a template with the rooms of another one and new synonyms. The
+     * rooms and their graph are shared as they are; the words of the new
+     * vocabulary go into a copy of the graph's symbols.
+     *
+     * @param template the template whose rooms to share
+     * @param synonyms synonyms of commands
+     */
+    private WorldTemplate(WorldTemplate template, Map<String, String> synonyms) {
+        this.directoryName = template.directoryName;
+        this.rooms = template.rooms;
+        this.graph = template.graph;
+        this.objectNames = template.objectNames;
+        this.vocabulary = compileVocabulary(this.graph.getSymbols().copy(), this.objectNames, synonyms);
+        this.commands = CommandRegistry.getDefault().compile(this.vocabulary);
+        this.synonyms = Map.copyOf(synonyms);
+        this.helpText = template.helpText;
+    }
+
+    private static Vocabulary compileVocabulary(SymbolTable symbols, List<String> objectNames, Map<String, String> synonyms) {
+        CommandRegistry registry = CommandRegistry.getDefault();
+        Map<String, String> words = new HashMap<>(registry.getAliases());
+        words.putAll(synonyms); //the game's own synonyms win over aliases of verbs
+        return Vocabulary.compile(symbols, registry.getVerbs(), objectNames, words);
+    }
+
+    /**
+     * withSynonyms
+     * __________________________
+     * Make a template that differs from this one only in its synonyms, e.g.
+     * after synonyms.txt was edited. This template is left as it is.
+     *
+     * @param synonyms synonyms of commands
+     * @return the new template
+     */
+    WorldTemplate withSynonyms(Map<String, String> synonyms) {
+        return new WorldTemplate(this, synonyms);
+    }
+
+    /**
+     * forDirectory
+     * __________________________
+     * Get the template of a game directory, loading it if no game has used it yet.
+     *
+     * @param directoryName the game directory
+     * @return the template shared by every game of the directory
+     * @throws IOException if the game files cannot be read
+     */
+    public static WorldTemplate forDirectory(String directoryName) throws IOException {
+        return AdventureLoader.await(load(directoryName));
+    }
+
+    /**
+     * load
+     * __________________________
+     * Start loading the template of a game directory, unless it is loaded
+     * or being loaded already (see AdventureLoader.loadShared).
+     *
+     * @param directoryName the game directory
+     * @return a future holding the template shared by every game of the directory
+     */
+    static CompletableFuture<WorldTemplate> load(String directoryName) {
+        return AdventureLoader.loadShared(TEMPLATES, directoryName, () -> new AdventureLoader(directoryName).loadWorld());
+    }
+
+    /**
+     * replace
+     * __________________________
+     * Make a newly loaded template the one that new games of its directory start from.
+     *
+     * @param newer the new template
+     */
+    static void replace(WorldTemplate newer) {
+        TEMPLATES.put(newer.directoryName, CompletableFuture.completedFuture(newer));
+    }
+
+    /**
+     * getDirectoryName
+     * __________________________
+     * @return the game directory
+     */
+    public String getDirectoryName() {
+        return this.directoryName;
+    }
+
+    /**
+     * getRooms
+     * __________________________
+     * @return read-only map of the template rooms, by number
+     */
+    public Map<Integer, Room> getRooms() {
+        return this.rooms;
+    }
+
+    /**
+     * getGraph
+     * __________________________
+     * @return the passages of every room
+     */
+    public WorldGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * getVocabulary
+     * __________________________
+     * @return every word the world understands
+     */
+    public Vocabulary getVocabulary() {
+        return this.vocabulary;
+    }
+
+    /**
+     * getCommand
+     * __________________________
+     * @param tokenId the token id of the first word of a command
+     * @return the handler of the verb, or null if the word is not a verb
+     */
+    public CommandHandler getCommand(int tokenId) {
+        return tokenId >= 0 && tokenId < this.commands.length ? this.commands[tokenId] : null;
+    }
+
+    /**
+     * getSynonyms
+     * __________________________
+     * @return read-only map of synonyms to commands
+     */
+    public Map<String, String> getSynonyms() {
+        return this.synonyms;
+    }
+
+    /**
+     * getHelpText
+     * __________________________
+     * @return the help text of the game
+     */
+    public String getHelpText() {
+        return this.helpText;
+    }
+
+    /**
+     * A saved game refers to its template by directory only, so loading
+     * the game shares the template of the running games.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return new SerializedTemplate(this.directoryName);
+    }
+
+    /**
+     * The form in which a template is saved.
+     */
+    private static class SerializedTemplate implements Serializable {
+        private final String directoryName; //the game directory
+
+        SerializedTemplate(String directoryName) {
+            this.directoryName = directoryName;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            try {
+                return forDirectory(this.directoryName);
+            } catch (IOException e) {
+                InvalidObjectException error = new InvalidObjectException("Could not load the game files of " + this.directoryName);
+                error.initCause(e);
+                throw error;
+            }
+        }
+    }
+}
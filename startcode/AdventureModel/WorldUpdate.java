@@ -0,0 +1,79 @@
+package AdventureModel;
+
+import java.util.List;
+
+/**
+ * WorldUpdate
+ * __________________________
+ * The changes found after game files were edited while the game was running.
+ * An update is prepared by the GameDirectoryWatcher on its own thread and
+ * applied by each game on the thread that plays it, between two commands, so
+ * the player never sees a half-applied world.
+ *
+ * Only the static part of the world changes: rooms keep the objects that are
+ * in them and the player keeps their location and inventory.
+ */
+class WorldUpdate {
+
+    final WorldTemplate template; //the new version of the world
+    final List<String[]> addedObjects; //name, description and room of objects new to objects.txt, or null
+    final List<String[]> removedObjects; //name, description and room of objects gone from objects.txt, or null
+
+    /**
+     * WorldUpdate Constructor
+     * __________________________
+     *
+     * @param template the new version of the world
+     * @param addedObjects objects new to objects.txt, or null if it did not change
+     * @param removedObjects objects gone from objects.txt, or null if it did not change
+     */
+    WorldUpdate(WorldTemplate template, List<String[]> addedObjects, List<String[]> removedObjects) {
+        this.template = template;
+        this.addedObjects = addedObjects;
+        this.removedObjects = removedObjects;
+    }
+
+    /**
+     * applyTo
+     * __________________________
+     * Swap the changes into a running game. Rooms the game did not change
+     * simply follow the new template; rooms whose objects it did change get
+     * the edits to objects.txt applied to their own objects.
+     *
+     * @param game the game to update
+     */
+    void applyTo(AdventureGame game) {
+        game.rebase(this.template);
+        for (Room room : game.getUsedRooms()) {
+            if (!room.hasOwnObjects()) continue;
+            if (this.removedObjects != null) {
+                for (String[] object : this.removedObjects) removeObject(room, object);
+            }
+            if (this.addedObjects != null) {
+                for (String[] object : this.addedObjects) addObject(room, object);
+            }
+        }
+    }
+
+    /**
+     * Put an object that was added to objects.txt into its room.
+     */
+    private static void addObject(Room room, String[] object) {
+        if (Integer.parseInt(object[2]) != room.getRoomNumber()) return;
+        room.addGameObject(new AdventureObject(object[0], object[1], room));
+    }
+
+    /**
+     * Take an object that was removed from objects.txt out of its starting room,
+     * if it is still there. Objects the player picked up are left alone.
+     */
+    private static void removeObject(Room room, String[] object) {
+        if (Integer.parseInt(object[2]) != room.getRoomNumber()) return;
+        for (AdventureObject inRoom : room.getObjects()) {
+            if (inRoom.getName().equals(object[0]) && inRoom.getDescription().equals(object[1])) {
+                room.removeGameObject(inRoom);
+                return;
+            }
+        }
+    }
+}
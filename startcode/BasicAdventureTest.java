@@ -1,9 +1,37 @@
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import AdventureModel.AdventureGame;
+import AdventureModel.BatchResult;
+import AdventureModel.CommandResult;
+import AdventureModel.GameEngine;
+import AdventureModel.GameTimer;
+import AdventureModel.JournalReplay;
+import AdventureModel.LazyRoomMap;
 import AdventureModel.Leaderboard;
+import AdventureModel.Passage;
+import AdventureModel.Room;
+import AdventureModel.TimerListener;
+import AdventureModel.TimingWheel;
+import AdventureModel.VirtualClock;
+import AdventureModel.WorldImage;
+import AdventureModel.WorldTemplate;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -23,6 +51,108 @@ public class BasicAdventureTest {
         assertEquals("a water bird", objects);
     }
 
+    @Test
+    void parseRoomsTest() throws IOException {
+        AdventureGame game = new AdventureGame("TinyGame");
+        assertEquals(10, game.getRooms().size());
+        Room room = game.getRooms().get(3);
+        assertEquals("Inside building", room.getRoomName());
+        assertEquals(9, room.getMotionTable().getDirection().size());
+        Passage out = room.getMotionTable().getDirection().get(2);
+        assertEquals("OUT", out.getDirection());
+        assertEquals(6, out.getDestinationRoom());
+        assertEquals("BIRD", out.getKeyName());
+        assertTrue(out.getIsBlocked());
+    }
+
+    @Test
+    void tokenizeTest() throws IOException {
+        AdventureGame game = new AdventureGame("TinyGame");
+        assertArrayEquals(new String[]{"NORTH", "TAKE", "BIRD"}, game.tokenize("  n  grab   Bird "));
+        assertArrayEquals(new String[]{"XYZ"}, game.tokenize("xyz"));
+        assertEquals(0, game.tokenize("   ").length);
+    }
+
+    @Test
+    void builtInCommandsTest() throws IOException {
+        AdventureGame game = new AdventureGame("TinyGame");
+        assertEquals("You can move in these directions:\n\nWEST, UP, NORTH, IN, SOUTH, DOWN", game.interpretAction("c"));
+        assertEquals("COMMANDS", game.getLastVerb());
+        assertTrue(game.interpretAction("LOOK").endsWith("Objects in this room:\na water bird"));
+        assertEquals(game.getInstructions(), game.interpretAction("help"));
+        assertEquals("INVALID COMMAND.", game.interpretAction("take bird now"));
+        assertNull(game.interpretAction("west"));
+        assertNull(game.getLastVerb());
+    }
+
+    @Test
+    void dropObjectTest() throws IOException {
+        AdventureGame game = new AdventureGame("TinyGame");
+        game.interpretAction("take bird");
+        assertTrue(game.getPlayer().checkIfObjectInInventory("BIRD"));
+        assertEquals("[BIRD]", game.getPlayer().getInventory().toString());
+        game.interpretAction("drop bird");
+        assertTrue(game.getPlayer().getInventory().isEmpty());
+        assertTrue(game.getPlayer().getCurrentRoom().checkIfObjectInRoom("BIRD"));
+    }
+
+    @Test
+    void forcedChainTest() throws IOException {
+        AdventureGame game = new AdventureGame("TinyGame");
+        game.interpretAction("take bird");
+        assertNull(game.interpretAction("in"));
+        assertEquals(1, game.getLastPath().size());
+        assertEquals("GAME OVER", game.interpretAction("out"));
+        List<Integer> path = new ArrayList<>();
+        for (Room room : game.getLastPath()) path.add(room.getRoomNumber());
+        assertEquals(List.of(6, 7, 8, 10), path);
+        assertTrue(game.getLastPath().get(0).getVisited());
+    }
+
+    @Test
+    void gameEngineTest() throws IOException {
+        try (GameEngine engine = new GameEngine("TinyGame")) {
+            assertEquals(1, engine.start().getRoomNumber());
+            CommandResult take = engine.execute("take bird");
+            assertEquals(List.of("BIRD"), take.getTaken());
+            assertFalse(take.hasMoved());
+            assertEquals(List.of(3), engine.execute("in").getPath());
+            CommandResult out = engine.execute("out");
+            assertTrue(out.isGameOver());
+            assertEquals(10, out.getRoomNumber());
+            assertTrue(engine.isOver());
+        }
+    }
+
+    @Test
+    void executeBatchTest() throws IOException {
+        try (GameEngine engine = new GameEngine("TinyGame")) {
+            BatchResult result = engine.executeBatch("take bird;w\ne;; xyzzy \nin;out;look");
+            assertEquals(6, result.size());
+            assertEquals(BatchResult.VERB, result.outcome(0));
+            assertEquals(BatchResult.MOVED, result.outcome(1));
+            assertEquals(2, result.roomNumber(1));
+            assertEquals(BatchResult.INVALID, result.outcome(3));
+            assertEquals(BatchResult.GAME_OVER, result.outcome(5));
+            assertEquals(10, result.roomNumber(5));
+            assertTrue(result.isGameOver());
+        }
+    }
+
+    @Test
+    void journalReplayTest() throws IOException {
+        File journal = File.createTempFile("journal", ".advj");
+        journal.deleteOnExit();
+        journal.delete(); //a new journal starts with its header
+        try (GameEngine engine = new GameEngine("TinyGame")) {
+            engine.getGame().startJournal(journal);
+            engine.executeBatch("take bird;w;xyzzy;e;in;out");
+        }
+        JournalReplay.Report report = JournalReplay.replay(journal.toPath());
+        assertEquals(6, report.getCommands());
+        assertTrue(report.matches(), report.getDivergence());
+    }
+
     @Test
     void gameTimerTest() throws IOException {
         AdventureGame game = new AdventureGame("TinyGame");
@@ -31,6 +161,113 @@ public class BasicAdventureTest {
         assertFalse(game.gameTimer.isRunning());
     }
 
+    @Test
+    void virtualClockTest() throws IOException {
+        VirtualClock clock = new VirtualClock();
+        AdventureGame game = new AdventureGame("TinyGame", clock);
+        int[] ticks = new int[2];
+        game.gameTimer.addListener(new TimerListener() {
+            public void tick(GameTimer timer) { ticks[0]++; }
+            public void expired(GameTimer timer) { ticks[1]++; }
+        }, 1, TimeUnit.SECONDS);
+
+        clock.advance(30, TimeUnit.SECONDS);
+        assertEquals(63, game.gameTimer.getRemainingTime());
+        game.changeState(); //pause
+        clock.advance(100, TimeUnit.SECONDS);
+        assertEquals(63, game.gameTimer.getRemainingTime());
+        game.changeState(); //resume
+        clock.advance(62, TimeUnit.SECONDS);
+        assertTrue(game.gameTimer.isRunning());
+        clock.advance(1500, TimeUnit.MILLISECONDS);
+        assertFalse(game.gameTimer.isRunning());
+        assertEquals(0, game.gameTimer.getRemainingTime());
+        assertEquals(93, ticks[0]);
+        assertEquals(1, ticks[1]);
+    }
+
+    @Test
+    void timeLimitTest() throws IOException {
+        VirtualClock clock = new VirtualClock();
+        try (GameEngine engine = new GameEngine(new AdventureGame("TinyGame", clock))) {
+            assertFalse(engine.execute("look").isGameOver());
+            clock.advance(93, TimeUnit.SECONDS);
+            CommandResult result = engine.execute("w");
+            assertTrue(result.isGameOver());
+            assertEquals(GameEngine.TIME_UP, result.getText());
+            assertEquals(1, result.getRoomNumber()); //the move came too late
+            assertTrue(engine.isOver());
+            assertEquals(1, engine.executeBatch("w;w").size());
+        }
+    }
+
+    @Test
+    void timingWheelOrderTest() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(TimeUnit.MILLISECONDS.toNanos(1), 8, "wheel-order");
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        long start = System.nanoTime();
+        for (int delay : new int[]{30, 6, 14}) { //every one in the same slot, some turns of the wheel apart
+            wheel.schedule(() -> {
+                assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(delay), "ran early");
+                order.add(delay);
+                done.countDown();
+            }, delay, 0, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(6, 14, 30), order);
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    void timingWheelCancelTest() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(TimeUnit.MILLISECONDS.toNanos(1), 8, "wheel-cancel");
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Timeout cancelled = wheel.schedule(runs::incrementAndGet, 20, 0, TimeUnit.MILLISECONDS);
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+
+        //a task cancels the one due on the same tick after it
+        TimingWheel.Timeout[] sibling = new TimingWheel.Timeout[1];
+        CountDownLatch first = new CountDownLatch(1);
+        wheel.schedule(() -> {
+            sibling[0].cancel();
+            first.countDown();
+        }, 5, 0, TimeUnit.MILLISECONDS);
+        sibling[0] = wheel.schedule(runs::incrementAndGet, 5, 0, TimeUnit.MILLISECONDS);
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(0, runs.get());
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    void timingWheelFailureTest() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(TimeUnit.MILLISECONDS.toNanos(1), 8, "wheel-failure");
+        wheel.schedule(() -> { throw new AssertionError("a listener failed"); }, 2, 0, TimeUnit.MILLISECONDS);
+        CountDownLatch later = new CountDownLatch(1);
+        wheel.schedule(later::countDown, 10, 0, TimeUnit.MILLISECONDS);
+        assertTrue(later.await(5, TimeUnit.SECONDS)); //the wheel kept turning
+    }
+
+    @Test
+    void timingWheelPeriodTest() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(TimeUnit.MILLISECONDS.toNanos(5), 4, "wheel-period");
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, 0, 1, TimeUnit.MILLISECONDS);
+        Thread.sleep(200);
+        timeout.cancel();
+        assertTrue(runs.get() >= 20, "a task always overdue runs on every tick, not every turn of the wheel: " + runs.get());
+
+        //with nothing left to run the wheel thread sleeps until a task comes
+        Thread.sleep(50);
+        Thread thread = Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().equals("wheel-period")).findFirst().orElseThrow();
+        assertEquals(Thread.State.WAITING, thread.getState());
+        CountDownLatch woken = new CountDownLatch(1);
+        wheel.schedule(woken::countDown, 10, 0, TimeUnit.MILLISECONDS);
+        assertTrue(woken.await(5, TimeUnit.SECONDS));
+    }
+
     @Test
     void timerStateTest() throws IOException {
         AdventureGame game = new AdventureGame("TinyGame");
@@ -44,13 +281,146 @@ public class BasicAdventureTest {
     @Test
     void leaderboardTest() throws IOException {
         AdventureGame game = new AdventureGame("TinyGame");
-        assertTrue(Leaderboard.bestTimes.size() <= 3);
+        assertTrue(game.leaderboard.size() <= 3);
         game.leaderboard.addTime("saj", 11);
         game.leaderboard.addTime("lucy", 12);
         game.leaderboard.addTime("jacob", 13);
-        assertTrue(Leaderboard.bestTimes.size() == 3);
+        assertTrue(game.leaderboard.size() == 3);
         game.leaderboard.addTime("aabbcc", 14);
-        assertTrue(Leaderboard.bestTimes.size() == 3);
+        assertTrue(game.leaderboard.size() == 3);
+        assertSame(game.leaderboard, new AdventureGame("TinyGame").leaderboard);
+    }
+
+    @Test
+    void leaderboardSnapshotTest() throws InterruptedException {
+        Leaderboard leaderboard = new Leaderboard(5);
+        List<Thread> players = new ArrayList<>();
+        for (int p = 0; p < 8; p++) {
+            String name = "player" + p;
+            players.add(Thread.ofVirtual().start(() -> {
+                for (int time = 100; time > 0; time--) leaderboard.addTime(name, time);
+            }));
+        }
+        for (Thread player : players) player.join();
+
+        List<Leaderboard.Entry> times = leaderboard.snapshot();
+        assertEquals(List.of(new Leaderboard.Entry("player0", 1), new Leaderboard.Entry("player1", 1),
+                new Leaderboard.Entry("player2", 1), new Leaderboard.Entry("player3", 1),
+                new Leaderboard.Entry("player4", 1)), times);
+        assertSame(times, leaderboard.snapshot());
+        assertThrows(UnsupportedOperationException.class, () -> times.add(new Leaderboard.Entry("cheat", 0)));
+        assertFalse(leaderboard.addTime("player0", 2));
+        assertTrue(leaderboard.addTime("fast", 0));
+        assertNull(leaderboard.getTime("player4"));
+    }
+
+    @Test
+    void objectsFormattingErrorTest() throws IOException {
+        File directory = Files.createTempDirectory("world").toFile();
+        directory.deleteOnExit();
+        for (String fileName : List.of("rooms.txt", "synonyms.txt", "help.txt")) {
+            File copy = new File(directory, fileName);
+            copy.deleteOnExit();
+            Files.copy(new File("Games/TinyGame", fileName).toPath(), copy.toPath());
+        }
+        File objects = new File(directory, "objects.txt");
+        objects.deleteOnExit();
+        Files.writeString(objects.toPath(), "LAMP\nA shiny lamp\n1\nKEYS\nA set of keys\n2\n");
+
+        IOException error = assertThrows(IOException.class, () -> WorldTemplate.forDirectory(directory.getPath()));
+        assertTrue(error.getMessage().contains("objects.txt"));
+        assertTrue(error.getMessage().contains("KEYS"));
+    }
+
+    @Test
+    void worldTemplateRetryTest() throws IOException {
+        File directory = Files.createTempDirectory("world").toFile();
+        directory.deleteOnExit();
+        assertThrows(IOException.class, () -> WorldTemplate.forDirectory(directory.getPath()));
+
+        for (String fileName : List.of("rooms.txt", "objects.txt", "synonyms.txt", "help.txt")) {
+            File copy = new File(directory, fileName);
+            copy.deleteOnExit();
+            Files.copy(new File("Games/TinyGame", fileName).toPath(), copy.toPath());
+        }
+        WorldTemplate template = WorldTemplate.forDirectory(directory.getPath()); //the failed load was not kept
+        assertEquals(10, template.getRooms().size());
+        assertSame(template, WorldTemplate.forDirectory(directory.getPath()));
+    }
+
+    @Test
+    void worldImageTest() throws IOException {
+        File directory = Files.createTempDirectory("image").toFile();
+        directory.deleteOnExit();
+        for (String fileName : List.of("rooms.txt", "objects.txt", "synonyms.txt", "help.txt")) {
+            File copy = new File(directory, fileName);
+            copy.deleteOnExit();
+            Files.copy(new File("Games/TinyGame", fileName).toPath(), copy.toPath());
+        }
+        WorldImage.imageFile(directory.getPath()).deleteOnExit();
+        WorldTemplate text = WorldTemplate.forDirectory("Games/TinyGame");
+        WorldImage.write(text, directory.getPath(), WorldImage.stamp(directory.getPath()));
+        assertTrue(WorldImage.isFresh(directory.getPath()));
+
+        Map<Integer, Room> rooms = WorldImage.open(directory.getPath()).readRooms(directory.getPath());
+        assertEquals(text.getRooms().size(), rooms.size());
+        for (Room room : text.getRooms().values()) {
+            Room decoded = rooms.get(room.getRoomNumber());
+            assertEquals(room.getRoomName(), decoded.getRoomName());
+            assertEquals(room.getRoomDescription(), decoded.getRoomDescription());
+            assertEquals(room.getCommands(), decoded.getCommands());
+            assertEquals(room.getObjectString(), decoded.getObjectString());
+            assertSame(decoded, rooms.get(room.getRoomNumber())); //decoded once
+        }
+    }
+
+    @Test
+    void lazyRoomsRewrittenTest() throws IOException {
+        File directory = Files.createTempDirectory("lazy").toFile();
+        File rooms = new File(directory, "rooms.txt");
+        File replacement = new File(directory, "rooms.new");
+        directory.deleteOnExit();
+        rooms.deleteOnExit();
+        replacement.deleteOnExit();
+        String text = Files.readString(Path.of("Games/TinyGame/rooms.txt"));
+        Files.writeString(rooms.toPath(), text);
+        LazyRoomMap map = LazyRoomMap.index(directory.getPath());
+
+        //a new file renamed over rooms.txt leaves the indexed one readable
+        Files.writeString(replacement.toPath(), "\n\n" + text.replace("End of road", "Road's end"));
+        Files.move(replacement.toPath(), rooms.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        assertEquals("End of road", map.get(2).getRoomName());
+
+        //rooms.txt rewritten in place fails to read until the world is loaded again
+        map = LazyRoomMap.index(directory.getPath());
+        assertEquals("Road's end", map.get(2).getRoomName());
+        try (FileChannel channel = FileChannel.open(rooms.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(("\n" + text.replace("Inside building", "Well house")).getBytes(StandardCharsets.UTF_8)));
+        }
+        LazyRoomMap stale = map;
+        assertThrows(UncheckedIOException.class, () -> stale.get(3));
+        assertEquals("Well house", LazyRoomMap.index(directory.getPath()).get(3).getRoomName());
+        assertEquals("Road's end", map.get(2).getRoomName()); //still in memory
+    }
+
+    @Test
+    void leaderboardLogTest() throws IOException {
+        File directory = Files.createTempDirectory("leaderboard").toFile();
+        File snapshot = new File(directory, "leaderboard.txt");
+        File log = new File(directory, "leaderboard.log");
+        snapshot.deleteOnExit();
+        log.deleteOnExit();
+        directory.deleteOnExit();
+        Files.writeString(snapshot.toPath(), "amy,30\nbob,40.250\n"); //whole seconds, as older boards hold, or milliseconds
+
+        Leaderboard leaderboard = Leaderboard.forDirectory(directory.getPath());
+        assertEquals(List.of(new Leaderboard.Entry("amy", 30_000), new Leaderboard.Entry("bob", 40_250)), leaderboard.snapshot());
+        leaderboard.addTime("cat", 20_000);
+        leaderboard.addTime("amy", 25_005);
+        leaderboard.save().join();
+        leaderboard.save().join(); //nothing new to write
+        assertEquals(List.of("amy,25.005", "cat,20.000"), Files.readAllLines(log.toPath()).stream().sorted().toList());
+        assertEquals("amy,30\nbob,40.250\n", Files.readString(snapshot.toPath())); //the snapshot is only rewritten by compaction
     }
 
 }
@@ -0,0 +1,103 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class LatencyHistogram.
+ * Counts latencies in nanoseconds into log-linear buckets: values below 32
+ * have a bucket each, and every power of two above that is split into 32
+ * buckets, so a percentile is within about 3% of the true value. Recording
+ * is one atomic increment and never allocates, so any number of threads can
+ * share a histogram.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5; //32 buckets per power of two
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); //latencies in each bucket
+
+    /**
+     * Record one latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        this.counts.incrementAndGet(bucket(Math.max(nanos, 0)));
+    }
+
+    /**
+     * Move the latencies recorded so far into a new histogram, e.g. to report
+     * on one interval while the next is being recorded.
+     *
+     * @return a histogram of the latencies recorded since the last drain
+     */
+    public LatencyHistogram drain() {
+        LatencyHistogram drained = new LatencyHistogram();
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = this.counts.getAndSet(i, 0);
+            if (count != 0) drained.counts.set(i, count);
+        }
+        return drained;
+    }
+
+    /**
+     * Add the latencies of another histogram to this one.
+     *
+     * @param other the histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) this.counts.addAndGet(i, count);
+        }
+    }
+
+    /**
+     * @return the number of latencies recorded
+     */
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += this.counts.get(i);
+        return total;
+    }
+
+    /**
+     * @param percentile the percentile, e.g. 99.0
+     * @return the latency in nanoseconds that the given percent of latencies are at or below, or 0 if none were recorded
+     */
+    public long percentile(double percentile) {
+        long total = count();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if (seen >= rank) return highestIn(i);
+        }
+        return highestIn(BUCKETS - 1);
+    }
+
+    /**
+     * @param nanos a latency in nanoseconds
+     * @return the latency as text in a unit that suits it, e.g. "85 us"
+     */
+    public static String format(long nanos) {
+        if (nanos < 1_000) return nanos + " ns";
+        if (nanos < 1_000_000) return String.format("%.0f us", nanos / 1e3);
+        if (nanos < 1_000_000_000) return String.format("%.1f ms", nanos / 1e6);
+        return String.format("%.2f s", nanos / 1e9);
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) - SUB_COUNT);
+    }
+
+    private static long highestIn(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int shift = bucket / SUB_COUNT - 1;
+        long top = bucket % SUB_COUNT + SUB_COUNT;
+        return ((top + 1) << shift) - 1;
+    }
+}
@@ -1,11 +1,10 @@
 package views;
 
 import AdventureModel.*;
-import javafx.animation.KeyFrame;
 import javafx.animation.PauseTransition;
-import javafx.animation.Timeline;
 import javafx.application.Platform;
-import javafx.event.ActionEvent;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -27,6 +26,7 @@ import javafx.scene.AccessibleRole;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -67,8 +67,16 @@ public class AdventureGameView implements Observer{
     private MediaPlayer mediaPlayer; //to play audio
     private boolean mediaPlaying; //to know if the audio is playing
 
-    private Timeline timeline; // to update the time of the game timer
     static Label remainTimeLabel = new Label(); // to display the remain time of the game timer
+    private final StringProperty remainTimeText = new SimpleStringProperty(); // text of remainTimeLabel, only set when the second shown changes
+    private int shownRemainingTime = -1; // the remaining time shown, in seconds
+    private GameTimer watchedTimer; // the game timer remainTimeLabel follows, or null
+    private final TimerListener timerListener = new TimerListener() { // brings each tick of the game timer to the JavaFX thread
+        @Override
+        public void tick(GameTimer timer) {
+            Platform.runLater(AdventureGameView.this::updateTimerLabel);
+        }
+    };
 
     SaveView currentSaveView; // Represents the current SaveView instance for managing the save game GUI.
     LoadView currentLoadView; // Represents the current LoadView instance for handling the load game GUI.
@@ -172,6 +180,8 @@ public class AdventureGameView implements Observer{
         makeButtonAccessible(settingButton, "Setting Button", "This button sets the font size.", "This button adjust the font size and style. Click it in order to adjust the game font size and style.");
         addSettingEvent();
 
+        addTimerLabel();
+
         //Pause and Resume Button
         pauseResumeButton = new Button("Pause/Resume");
         pauseResumeButton.setId("Pause/Resume");
@@ -280,22 +290,34 @@ public class AdventureGameView implements Observer{
     }
 
     /**
-     * updateTimerLabel()
+     * addTimerLabel()
      * __________________________
-     * Update TimerLabel as remain time is updating
-     * if remaining Time is less than 0
-     * stop the timer and exit the game.
-     * */
-    public void updateTimerLabel() {
-        gridPane.getChildren().remove(remainTimeLabel);
-        int remainingTime = this.model.gameTimer.getRemainingTime();
-        remainTimeLabel.setText("Time Remaining: " + Integer.toString(remainingTime) + " seconds");
+     * Add the remain time label to the grid, once; from then on
+     * only its text changes.
+     */
+    private void addTimerLabel() {
+        remainTimeLabel.textProperty().bind(remainTimeText);
         remainTimeLabel.setStyle("-fx-text-fill: white;");
         remainTimeLabel.setFont(new Font("Arial", currentFontSize));
         setFontStyleLabel(currentFontStyle, remainTimeLabel);
         VBox timeBox = new VBox(remainTimeLabel);
         timeBox.setAlignment(Pos.BOTTOM_CENTER);
         gridPane.add(timeBox, 1, 2, 1, 1);
+    }
+
+    /**
+     * updateTimerLabel()
+     * __________________________
+     * Update TimerLabel if the remaining time in seconds changed
+     * if remaining Time is less than 0
+     * stop the timer and exit the game.
+     * */
+    public void updateTimerLabel() {
+        int remainingTime = this.model.gameTimer.getRemainingTime();
+        if (remainingTime != shownRemainingTime) {
+            shownRemainingTime = remainingTime;
+            remainTimeText.set("Time Remaining: " + remainingTime + " seconds");
+        }
         if (remainingTime <= 0) {
             stopTimer();
             this.model.gameTimer.stopTimer();
@@ -306,31 +328,26 @@ public class AdventureGameView implements Observer{
     /**
      * startTimer()
      * __________________________
-     * Starts timeline and scheduling a timeline to regularly update the timer label.
-     * If the timer is already running, it is stopped before starting again.
+     * Follow the game timer of the model: the timer label is updated
+     * on every second the timer ticks, and nothing runs in between.
+     * If the label already follows a timer, it stops following it first.
      */
     public void startTimer() {
-        if (timeline != null) {
-            timeline.stop();
-        }
-        timeline = new Timeline(new KeyFrame(Duration.seconds(0.1), new EventHandler<ActionEvent>() {
-            @Override
-            public void handle(ActionEvent event) {
-                updateTimerLabel();
-            }
-        }));
-        timeline.setCycleCount(Timeline.INDEFINITE);
-        timeline.play();
+        stopTimer();
+        watchedTimer = this.model.gameTimer;
+        watchedTimer.addListener(timerListener, 1, TimeUnit.SECONDS);
+        updateTimerLabel();
     }
 
     /**
      * stopTimer()
      *  __________________________
-     * Halts the timeline updates.
+     * Stop following the game timer.
      */
     public void stopTimer() {
-        if (timeline != null) {
-            timeline.stop();
+        if (watchedTimer != null) {
+            watchedTimer.removeListener(timerListener);
+            watchedTimer = null;
         }
     }
 
@@ -412,27 +429,70 @@ public class AdventureGameView implements Observer{
         text = text.strip(); //get rid of white space
         stopArticulation(); //if speaking, stop
 
-        if (text.equalsIgnoreCase("LOOK") || text.equalsIgnoreCase("L")) {
-            String roomDesc = this.model.getPlayer().getCurrentRoom().getRoomDescription();
-            String objectString = this.model.getPlayer().getCurrentRoom().getObjectString();
-            if (!objectString.isEmpty()) roomDescLabel.setText(roomDesc + "\n\nObjects in this room:\n" + objectString);
+        String output = this.model.interpretAction(text); //process the command!
+        String verb = this.model.getLastVerb();
+
+        if ("LOOK".equals(verb)) {
+            roomDescLabel.setText(output);
             articulateRoomDescription(); //all we want, if we are looking, is to repeat description.
             return;
-        } else if (text.equalsIgnoreCase("HELP") || text.equalsIgnoreCase("H")) {
+        } else if ("HELP".equals(verb)) {
             showInstructions();
             return;
-        } else if (text.equalsIgnoreCase("COMMANDS") || text.equalsIgnoreCase("C")) {
-            showCommands(); //this is new!  We did not have this command in A1
+        } else if ("COMMANDS".equals(verb)) {
+            roomDescLabel.setText(output); //this is new!  We did not have this command in A1
             return;
         }
 
-        //try to move!
-        String output = this.model.interpretAction(text); //process the command!
+        if ("FORCED".equals(output) || ("GAME OVER".equals(output) && this.model.getLastPath().size() > 1)) {
+            //the model already moved the player through the forced rooms;
+            //show each of them in turn, then the room they ended up in
+            inputTextField.setDisable(true);
+            showForcedPath(new ArrayList<>(this.model.getLastPath()), 0, output);
+        } else {
+            showOutcome(output);
+        }
+    }
+
+    /**
+     * showForcedPath
+     * __________________________
+     *
+     * Show a room of the path of a forced move and pause, then go on to
+     * the next one. The last room of the path is where the player is.
+     *
+     * @param path the rooms the move passed through
+     * @param step the room of the path to show
+     * @param output the output of the move
+     */
+    private void showForcedPath(List<Room> path, int step, String output) {
+        if (step == path.size() - 1) {
+            inputTextField.setDisable(false);
+            showOutcome("FORCED".equals(output) ? "" : output);
+            return;
+        }
+        stopArticulation();
+        updateScene("", path.get(step));
+        updateItems();
+        PauseTransition pause = new PauseTransition(Duration.seconds(2.5));
+        pause.setOnFinished(event -> showForcedPath(path, step + 1, output));
+        pause.play();
+    }
 
-        if (output == null || (!output.equals("GAME OVER") && !output.equals("FORCED") && !output.equals("HELP"))) {
+    /**
+     * showOutcome
+     * __________________________
+     *
+     * Show the room the player is in after a command, with the output
+     * of the command, or end the game if it is over.
+     *
+     * @param output the output of the command
+     */
+    private void showOutcome(String output) {
+        if (!"GAME OVER".equals(output)) {
             updateScene(output);
             updateItems();
-        } else if (output.equals("GAME OVER")) {
+        } else {
             updateScene("");
             updateItems();
 
@@ -454,20 +514,6 @@ public class AdventureGameView implements Observer{
                 Platform.exit();
             });
             pause.play();
-        } else if (output.equals("FORCED")) {
-            //write code here to handle "FORCED" events!
-            //Your code will need to display the image in the
-            //current room and pause, then transition to
-            //the forced room.
-            updateScene("");
-            updateItems();
-            inputTextField.setDisable(true);
-            PauseTransition pause = new PauseTransition(Duration.seconds(2.5));
-            pause.setOnFinished(event -> {
-                inputTextField.setDisable(false);
-                submitEvent(output);
-            });
-            pause.play();
         }
     }
 
@@ -484,7 +530,8 @@ public class AdventureGameView implements Observer{
 
             KeyCode keyPress = e.getCode();
             if (keyPress.equals(KeyCode.ENTER)) {
-                this.model.getLeaderboard().addTime(this.inputTextField.getText(), this.model.getGameTimer().getEndingTime());
+                long millis = TimeUnit.NANOSECONDS.toMillis(this.model.getGameTimer().getElapsedNanos());
+                this.model.getLeaderboard().addTime(this.inputTextField.getText(), millis);
                 this.model.saveLeaderboard();
                 this.inputTextField.setText("");
             }
@@ -496,19 +543,6 @@ public class AdventureGameView implements Observer{
     }
 
 
-    /**
-     * showCommands
-     * __________________________
-     *
-     * update the text in the GUI (within roomDescLabel)
-     * to show all the moves that are possible from the
-     * current room.
-     */
-    private void showCommands() {
-        roomDescLabel.setText("You can move in these directions:\n\n" + this.model.player.getCurrentRoom().getCommands());
-    }
-
-
     /**
      * updateScene
      * __________________________
@@ -522,9 +556,23 @@ public class AdventureGameView implements Observer{
      * @param textToDisplay the text to display below the image.
      */
     public void updateScene(String textToDisplay) {
+        updateScene(textToDisplay, this.model.getPlayer().getCurrentRoom());
+    }
+
+    /**
+     * updateScene
+     * __________________________
+     *
+     * Show a room, and print some text below it, as updateScene does for
+     * the current room.
+     *
+     * @param textToDisplay the text to display below the image.
+     * @param room the room to show
+     */
+    private void updateScene(String textToDisplay, Room room) {
 
-        getRoomImage(); //get the image of the current room
-        formatText(textToDisplay); //format the text to display
+        getRoomImage(room); //get the image of the room
+        formatText(textToDisplay, room); //format the text to display
         roomDescLabel.setPrefWidth(700);
         roomDescLabel.setPrefHeight(500);
         roomDescLabel.setTextOverrun(OverrunStyle.CLIP);
@@ -538,7 +586,7 @@ public class AdventureGameView implements Observer{
         stage.sizeToScene();
 
         //finally, articulate the description
-        if (textToDisplay == null || textToDisplay.isBlank()) articulateRoomDescription();
+        if (textToDisplay == null || textToDisplay.isBlank()) articulateRoomDescription(room);
     }
 
     /**
@@ -550,9 +598,22 @@ public class AdventureGameView implements Observer{
      * @param textToDisplay the text to be formatted for display.
      */
     private void formatText(String textToDisplay) {
+        formatText(textToDisplay, this.model.getPlayer().getCurrentRoom());
+    }
+
+    /**
+     * formatText
+     * __________________________
+     *
+     * Format text for display, or the description of a room if there is none.
+     *
+     * @param textToDisplay the text to be formatted for display.
+     * @param room the room to describe
+     */
+    private void formatText(String textToDisplay, Room room) {
         if (textToDisplay == null || textToDisplay.isBlank()) {
-            String roomDesc = this.model.getPlayer().getCurrentRoom().getRoomDescription() + "\n";
-            String objectString = this.model.getPlayer().getCurrentRoom().getObjectString();
+            String roomDesc = room.getRoomDescription() + "\n";
+            String objectString = room.getObjectString();
             if (objectString != null && !objectString.isEmpty()) {
                 roomDescLabel.setText(roomDesc + "\nObjects in this room:\n" + objectString);
                 roomDescLabel.setFont(new Font("Arial", currentFontSize));
@@ -574,12 +635,14 @@ public class AdventureGameView implements Observer{
      * getRoomImage
      * __________________________
      *
-     * Get the image for the current room and place
+     * Get the image for a room and place
      * it in the roomImageView
+     *
+     * @param room the room to show
      */
-    private void getRoomImage() {
+    private void getRoomImage(Room room) {
 
-        int roomNumber = this.model.getPlayer().getCurrentRoom().getRoomNumber();
+        int roomNumber = room.getRoomNumber();
         String roomImage = this.model.getDirectoryName() + "/room-images/" + roomNumber + ".png";
 
         Image roomImageFile = new Image(roomImage);
@@ -590,7 +653,7 @@ public class AdventureGameView implements Observer{
 
         //set accessible text
         roomImageView.setAccessibleRole(AccessibleRole.IMAGE_VIEW);
-        roomImageView.setAccessibleText(this.model.getPlayer().getCurrentRoom().getRoomDescription());
+        roomImageView.setAccessibleText(room.getRoomDescription());
         roomImageView.setFocusTraversable(true);
     }
 
@@ -614,7 +677,7 @@ public class AdventureGameView implements Observer{
         objectsInRoom.getChildren().clear();
         objectsInInventory.getChildren().clear();
 
-        for (AdventureObject obj: this.model.player.getCurrentRoom().objectsInRoom) {
+        for (AdventureObject obj: this.model.player.getCurrentRoom().getObjects()) {
             Button button = getButton(obj);
             button.setOnMouseClicked(e -> {
                 submitEvent("TAKE " + obj.getName());
@@ -624,7 +687,7 @@ public class AdventureGameView implements Observer{
             objectsInRoom.getChildren().add(button);
         }
 
-        for (AdventureObject obj: this.model.player.inventory) {
+        for (AdventureObject obj: this.model.player.getInventoryObjects()) {
             Button button = getButton(obj);
             button.setOnMouseClicked(e -> {
                 submitEvent("DROP " + obj.getName());
@@ -738,11 +801,8 @@ public class AdventureGameView implements Observer{
 
             source.append("LEADERBOARD\n\n\n");
 
-            HashMap sortedMap = new HashMap<String, Integer>();
-            sortedMap = sortByValue(Leaderboard.bestTimes);
-
-            for (Object key : sortedMap.keySet()) {
-                source.append(key).append(" : ").append(Leaderboard.bestTimes.get(key)).append("s\n");
+            for (Leaderboard.Entry entry : this.model.getLeaderboard().snapshot()) { //best first
+                source.append(entry.name()).append(" : ").append(entry.toSeconds()).append("s\n");
             }
 
             String text = source.toString();
@@ -776,30 +836,6 @@ public class AdventureGameView implements Observer{
         leaderboardToggle = !leaderboardToggle;
     }
 
-    /** sortByValue
-     * Helper method to sort and return the Hashmap based on the time(integer value).
-     */
-    public static HashMap<String, Integer> sortByValue(HashMap<String, Integer> hm) {
-
-        List<HashMap.Entry<String, Integer> > list =
-                new LinkedList<Map.Entry<String, Integer> >(hm.entrySet());
-
-        Collections.sort(list, new Comparator<Map.Entry<String, Integer> >() {
-            public int compare(Map.Entry<String, Integer> o1,
-                               Map.Entry<String, Integer> o2)
-            {
-                return (o1.getValue()).compareTo(o2.getValue());
-            }
-        });
-
-        HashMap<String, Integer> temp = new LinkedHashMap<String, Integer>();
-        for (Map.Entry<String, Integer> aa : list) {
-            temp.put(aa.getKey(), aa.getValue());
-        }
-        return temp;
-    }
-
-
     /**
      * Retrieves a list containing all the Label objects associated with the current class.
      * The labels include room description, object description, inventory details, and command information.
@@ -1000,11 +1036,20 @@ public class AdventureGameView implements Observer{
      * This method articulates Room Descriptions
      */
     public void articulateRoomDescription() {
+        articulateRoomDescription(this.model.getPlayer().getCurrentRoom());
+    }
+
+    /**
+     * This method articulates the description of a room
+     *
+     * @param room the room to describe
+     */
+    private void articulateRoomDescription(Room room) {
         String musicFile;
         String adventureName = this.model.getDirectoryName();
-        String roomName = this.model.getPlayer().getCurrentRoom().getRoomName();
+        String roomName = room.getRoomName();
 
-        if (!this.model.getPlayer().getCurrentRoom().getVisited()) musicFile = "./" + adventureName + "/sounds/" + roomName.toLowerCase() + "-long.mp3" ;
+        if (!room.getVisited()) musicFile = "./" + adventureName + "/sounds/" + roomName.toLowerCase() + "-long.mp3" ;
         else musicFile = "./" + adventureName + "/sounds/" + roomName.toLowerCase() + "-short.mp3" ;
         musicFile = musicFile.replace(" ","-");
 